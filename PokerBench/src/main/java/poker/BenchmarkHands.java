@@ -0,0 +1,52 @@
+package poker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/*
+ * Random hands of one category for the benchmarks, so the results can be
+ * split by category. Every five card hand is looked at and a fixed size
+ * random sample (the same every run for the same seed) is kept for each
+ * category, which also covers the rare ones: there are only 4 royal flushes
+ * and 36 straight flushes, so those samples repeat hands.
+ */
+public class BenchmarkHands {
+
+	public static PlayingCard[][] sample(HandCategory category, int size, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		List<PlayingCard[]> chosen = new ArrayList<PlayingCard[]>();
+		long seen = 0;
+		for (int c0 = 0; c0 < DeckOfCards.DECK_SIZE; c0++)
+			for (int c1 = c0 + 1; c1 < DeckOfCards.DECK_SIZE; c1++)
+				for (int c2 = c1 + 1; c2 < DeckOfCards.DECK_SIZE; c2++)
+					for (int c3 = c2 + 1; c3 < DeckOfCards.DECK_SIZE; c3++)
+						for (int c4 = c3 + 1; c4 < DeckOfCards.DECK_SIZE; c4++) {
+							if (HandCategory.fromGameValue(HandEvaluator.evaluate(c0, c1, c2, c3, c4)) != category)
+								continue;
+
+							// Reservoir sampling keeps each hand with equal chance.
+							PlayingCard[] hand = { PlayingCard.get(c0), PlayingCard.get(c1), PlayingCard.get(c2),
+									PlayingCard.get(c3), PlayingCard.get(c4) };
+							seen++;
+							if (chosen.size() < size)
+								chosen.add(hand);
+							else if (random.nextLong(seen) < size)
+								chosen.set(random.nextInt(size), hand);
+						}
+
+		// Deal the sample out in a random order, repeating it to fill up
+		// categories with fewer hands than asked for.
+		PlayingCard[][] hands = new PlayingCard[size][];
+		for (int i = 0; i < size; i++) {
+			hands[i] = chosen.get(i < chosen.size() ? i : random.nextInt(chosen.size()));
+		}
+		for (int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			PlayingCard[] temp = hands[i];
+			hands[i] = hands[j];
+			hands[j] = temp;
+		}
+		return hands;
+	}
+}
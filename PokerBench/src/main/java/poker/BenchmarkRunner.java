@@ -0,0 +1,27 @@
+package poker;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Runs the benchmarks with the GC profiler always on, so every result comes
+ * with gc.alloc.rate.norm (bytes allocated per operation) next to the time.
+ * Takes the usual JMH command line, e.g.
+ *
+ *   java -jar PokerBench/target/benchmarks.jar HandBenchmark -p category=FLUSH -rf json
+ */
+public class BenchmarkRunner {
+
+	// Seed for every deck and sample so runs before and after a change see
+	// exactly the same cards.
+	public static final long SEED = 20170310L;
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build())
+				.run();
+	}
+}
@@ -0,0 +1,69 @@
+package poker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Dealing from a DeckOfCards. The deck is seeded so every run deals the same
+ * cards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DeckBenchmark {
+
+	private DeckOfCards deck;
+
+	@Setup
+	public void setUp() {
+		deck = new DeckOfCards(BenchmarkRunner.SEED);
+	}
+
+	@Benchmark
+	public DeckOfCards reset() {
+		deck.reset();
+		return deck;
+	}
+
+	@Benchmark
+	public DeckOfCards shuffle() {
+		deck.shuffle();
+		return deck;
+	}
+
+	// Includes a reset every 52 deals, when the deck runs out.
+	@Benchmark
+	public PlayingCard dealNext() {
+		PlayingCard card = deck.dealNext();
+		if (card == null) {
+			deck.reset();
+			card = deck.dealNext();
+		}
+		return card;
+	}
+
+	// A new hand dealt from the deck (which is reset every ten hands).
+	@Benchmark
+	public HandOfCards newHandOfCards() {
+		if (++handsDealt == 10) {
+			deck.reset();
+			handsDealt = 0;
+		}
+		return new HandOfCards(deck);
+	}
+
+	private int handsDealt;
+}
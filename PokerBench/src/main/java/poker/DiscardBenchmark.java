@@ -0,0 +1,116 @@
+package poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Discarding, for each hand category, with and without a DiscardTable. It
+ * is kept apart from HandBenchmark so that only discard() is run both ways.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DiscardBenchmark {
+
+	private static final int SAMPLE_SIZE = 1024;
+	// 9 discards of at most 5 cards each fit in the 47 cards of a deck.
+	private static final int DISCARDS_PER_RESET = 9;
+
+	@Param({ "HIGH_HAND", "ONE_PAIR", "TWO_PAIR", "THREE_OF_A_KIND", "STRAIGHT", "FLUSH", "FULL_HOUSE",
+			"FOUR_OF_A_KIND", "STRAIGHT_FLUSH", "ROYAL_FLUSH" })
+	public HandCategory category;
+
+	// Whether discard() looks its decisions up in a DiscardTable or works
+	// them out with DiscardEvaluator.
+	@Param({ "false", "true" })
+	public boolean discardTable;
+
+	private PlayingCard[][] cards;
+	private DeckOfCards[] decks;
+	private int[] uses;
+	private int next;
+
+	// Generated the first time a trial asks for it and kept for the rest of
+	// the fork.
+	private static DiscardTable table;
+
+	@Setup
+	public void setUp() throws IOException {
+		cards = BenchmarkHands.sample(category, SAMPLE_SIZE, BenchmarkRunner.SEED);
+
+		// Each sample hand draws its replacements from a deck of the 47 cards
+		// not in it, in a random order, followed by the hand's own five
+		// cards, which are never reached. The deck's RandomSource always
+		// picks the last card, so reset() leaves the order alone and only
+		// moves the cursor back to the start.
+		SplittableRandom random = new SplittableRandom(BenchmarkRunner.SEED);
+		decks = new DeckOfCards[SAMPLE_SIZE];
+		uses = new int[SAMPLE_SIZE];
+		for (int i = 0; i < SAMPLE_SIZE; i++) {
+			DeckOfCards deck = new DeckOfCards(bound -> bound - 1);
+			long hand = 0;
+			for (PlayingCard card : cards[i]) {
+				hand |= CardSet.bit(card);
+			}
+			int position = 0;
+			for (int j = 0; j < DeckOfCards.DECK_SIZE; j++) {
+				if ((hand & CardSet.bit(j)) == 0)
+					deck.deck[position++] = PlayingCard.get(j);
+			}
+			for (int j = position - 1; j > 0; j--) {
+				int k = random.nextInt(j + 1);
+				PlayingCard temp = deck.deck[j];
+				deck.deck[j] = deck.deck[k];
+				deck.deck[k] = temp;
+			}
+			System.arraycopy(cards[i], 0, deck.deck, position, HandOfCards.HAND_SIZE);
+			decks[i] = deck;
+		}
+
+		if (discardTable && table == null) {
+			File file = File.createTempFile("discards", ".dat");
+			file.deleteOnExit();
+			DiscardTable.generate(file.getPath());
+			table = DiscardTable.load(file.getPath());
+		}
+		HandOfCards.setDiscardTable(discardTable ? table : null);
+	}
+
+	@TearDown
+	public void tearDown() {
+		HandOfCards.setDiscardTable(null);
+	}
+
+	// discard() changes the hand, so each call starts from a new copy of a
+	// sample hand (compare with HandBenchmark.newHandOfCards). A hand's deck
+	// is rewound after DISCARDS_PER_RESET discards, before its 47 cards run
+	// out.
+	@Benchmark
+	public int discard() {
+		next = (next + 1) & (SAMPLE_SIZE - 1);
+		if (uses[next] == DISCARDS_PER_RESET) {
+			decks[next].reset();
+			uses[next] = 0;
+		}
+		uses[next]++;
+		return new HandOfCards(decks[next], cards[next]).discard();
+	}
+}
@@ -0,0 +1,82 @@
+package poker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/*
+ * Making and scoring hands, with a separate result for each hand category
+ * since the work done (and so the cost) depends a lot on the category. Each
+ * benchmark cycles through a fixed random sample of hands of the category so
+ * the branch predictor cannot learn a single hand. Discarding is in
+ * DiscardBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HandBenchmark {
+
+	private static final int SAMPLE_SIZE = 1024;
+
+	@Param({ "HIGH_HAND", "ONE_PAIR", "TWO_PAIR", "THREE_OF_A_KIND", "STRAIGHT", "FLUSH", "FULL_HOUSE",
+			"FOUR_OF_A_KIND", "STRAIGHT_FLUSH", "ROYAL_FLUSH" })
+	public HandCategory category;
+
+	private PlayingCard[][] cards;
+	private HandOfCards[] hands;
+	private DeckOfCards deck;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		deck = new DeckOfCards(BenchmarkRunner.SEED);
+		cards = BenchmarkHands.sample(category, SAMPLE_SIZE, BenchmarkRunner.SEED);
+		hands = new HandOfCards[SAMPLE_SIZE];
+		for (int i = 0; i < SAMPLE_SIZE; i++) {
+			hands[i] = new HandOfCards(deck, cards[i]);
+		}
+	}
+
+	private int nextHand() {
+		next = (next + 1) & (SAMPLE_SIZE - 1);
+		return next;
+	}
+
+	@Benchmark
+	public HandOfCards newHandOfCards() {
+		return new HandOfCards(deck, cards[nextHand()]);
+	}
+
+	@Benchmark
+	public int getGameValue() {
+		return hands[nextHand()].getGameValue();
+	}
+
+	@Benchmark
+	public int evaluate() {
+		PlayingCard[] hand = cards[nextHand()];
+		return HandEvaluator.evaluate(hand[0], hand[1], hand[2], hand[3], hand[4]);
+	}
+
+	@Benchmark
+	public void getDiscardProbability(Blackhole blackhole) {
+		HandOfCards hand = hands[nextHand()];
+		for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+			blackhole.consume(hand.getDiscardProbability(i));
+		}
+	}
+}
@@ -0,0 +1,300 @@
+package poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/*
+ * JDK Flight Recorder events for the game, so that slow rounds can be lined
+ * up with GC pauses and safepoints in an ordinary recording, e.g.
+ *
+ *   java -XX:StartFlightRecording=filename=poker.jfr ...
+ *
+ * Every event has a duration (JFR's own start time and duration fields) and,
+ * where it has one, the hand category and the discard mask.
+ *
+ * Rounds and discard decisions are on by default but only recorded when
+ * they take longer than their threshold, so a recording holds the slow ones
+ * and not millions of normal ones. Deals, shuffles and evaluations take a
+ * few hundred nanoseconds at most and are off unless a recording turns them
+ * on (settings poker.Deal#enabled=true and so on).
+ *
+ * This is the GameEventHook the game uses whenever this class is on the
+ * class path and jdk.jfr is there to run it (JDK 11 and later, or JDK 8
+ * from update 262). It lives in its own source folder so that the rest of
+ * the game builds against plain Java 8. An event is only created when its
+ * type is enabled in a running recording, so without one nothing is
+ * allocated, not even before the JIT compiler gets to the code. Stack
+ * traces are left out since they are the expensive part of an event.
+ */
+final class GameEvents extends GameEventHook {
+
+	public static void main(String[] args) throws IOException, ParseException {
+		File file = File.createTempFile("discards", ".dat");
+		file.deleteOnExit();
+		DiscardTable.generate(file.getPath());
+		HandOfCards.setDiscardTable(DiscardTable.load(file.getPath()));
+		PokerPlayer player = new PokerPlayer(new DeckOfCards(53L));
+
+		System.out.println("Installed" + (GameEventHook.HOOK instanceof GameEvents ? " - Success" : " - Failed"));
+
+		// With every event on and no threshold, each round gives one round,
+		// deal, shuffle and discard event, and an evaluation for the dealt and
+		// the final hand.
+		final int rounds = 10000;
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		boolean fields = true;
+		Recording recording = new Recording();
+		for (String event : new String[] { ROUND, DEAL, SHUFFLE, EVALUATION, DISCARD }) {
+			recording.enable(event).withoutThreshold();
+		}
+		recording.start();
+		for (int i = 0; i < rounds; i++) {
+			player.playRound();
+		}
+		recording.stop();
+		for (RecordedEvent event : readEvents(recording)) {
+			String name = event.getEventType().getName();
+			counts.merge(name, 1, Integer::sum);
+			if (event.hasField("category") && HandCategory.valueOf(event.getString("category")) == null)
+				fields = false;
+			if (event.hasField("discardMask")
+					&& Integer.bitCount(event.getInt("discardMask")) > DiscardEvaluator.MAX_DISCARDS)
+				fields = false;
+			if (event.getDuration().isNegative())
+				fields = false;
+		}
+		System.out.println("Events: " + counts);
+		System.out.println("One of each per round" + (count(counts, ROUND) == rounds && count(counts, DEAL) == rounds
+				&& count(counts, SHUFFLE) == rounds && count(counts, DISCARD) == rounds
+				&& count(counts, EVALUATION) == 2 * rounds && fields ? " - Success" : " - Failed"));
+
+		// An ordinary recording keeps only the slow rounds and discards, and
+		// none of the small events.
+		recording = new Recording(Configuration.getConfiguration("default"));
+		recording.start();
+		long start = System.nanoTime();
+		for (int i = 0; i < 100 * rounds; i++) {
+			player.playRound();
+		}
+		long elapsed = System.nanoTime() - start;
+		recording.stop();
+		counts.clear();
+		for (RecordedEvent event : readEvents(recording)) {
+			if (event.getEventType().getName().startsWith("poker."))
+				counts.merge(event.getEventType().getName(), 1, Integer::sum);
+		}
+		System.out.println("Default recording: " + counts + ", " + (long) (100 * rounds * 1e9 / elapsed)
+				+ " rounds per second");
+		System.out.println("Only slow events by default" + (count(counts, DEAL) + count(counts, SHUFFLE)
+				+ count(counts, EVALUATION) == 0 && count(counts, ROUND) < rounds ? " - Success" : " - Failed"));
+	}
+
+	private static List<RecordedEvent> readEvents(Recording recording) throws IOException {
+		Path dump = Files.createTempFile("poker", ".jfr");
+		try {
+			recording.dump(dump);
+			recording.close();
+			return RecordingFile.readAllEvents(dump);
+		} finally {
+			Files.delete(dump);
+		}
+	}
+
+	private static int count(Map<String, Integer> counts, String name) {
+		Integer count = counts.get(name);
+		return count == null ? 0 : count;
+	}
+
+	static final String ROUND = "poker.Round";
+	static final String DEAL = "poker.Deal";
+	static final String SHUFFLE = "poker.Shuffle";
+	static final String EVALUATION = "poker.Evaluation";
+	static final String DISCARD = "poker.Discard";
+
+	@Name(ROUND)
+	@Label("Round")
+	@Category("Poker")
+	@Description("A round played by one player from a fresh deck")
+	@StackTrace(false)
+	@Threshold("100 us")
+	static class Round extends Event {
+		@Label("Dealt Category")
+		String dealtCategory;
+		@Label("Discard Mask")
+		@Description("Bit i is set if the card at position i was thrown away")
+		int discardMask;
+		@Label("Final Category")
+		String category;
+		@Label("Final Value")
+		int value;
+	}
+
+	@Name(DEAL)
+	@Label("Deal")
+	@Category("Poker")
+	@Description("Five cards dealt into a hand")
+	@StackTrace(false)
+	@Enabled(false)
+	static class Deal extends Event {
+		@Label("Category")
+		String category;
+	}
+
+	@Name(SHUFFLE)
+	@Label("Shuffle")
+	@Category("Poker")
+	@Description("The undealt cards of a deck shuffled")
+	@StackTrace(false)
+	@Enabled(false)
+	static class Shuffle extends Event {
+		@Label("Cards Dealt")
+		@Description("The cards dealt before the shuffle, which stay where they are")
+		int cardsDealt;
+	}
+
+	@Name(EVALUATION)
+	@Label("Evaluation")
+	@Category("Poker")
+	@Description("A hand given its game value")
+	@StackTrace(false)
+	@Enabled(false)
+	static class Evaluation extends Event {
+		@Label("Category")
+		String category;
+		@Label("Value")
+		int value;
+	}
+
+	@Name(DISCARD)
+	@Label("Discard")
+	@Category("Poker")
+	@Description("A discard decided by a player's strategy and made")
+	@StackTrace(false)
+	@Threshold("100 us")
+	static class Discard extends Event {
+		@Label("Dealt Category")
+		String dealtCategory;
+		@Label("Discard Mask")
+		@Description("Bit i is set if the card at position i was thrown away")
+		int discardMask;
+		@Label("Final Category")
+		String category;
+	}
+
+	// Looked up once, so that checking whether an event is wanted costs a
+	// field read and allocates nothing.
+	private static final EventType ROUND_TYPE = EventType.getEventType(Round.class);
+	private static final EventType DEAL_TYPE = EventType.getEventType(Deal.class);
+	private static final EventType SHUFFLE_TYPE = EventType.getEventType(Shuffle.class);
+	private static final EventType EVALUATION_TYPE = EventType.getEventType(Evaluation.class);
+	private static final EventType DISCARD_TYPE = EventType.getEventType(Discard.class);
+
+	// Made by GameEventHook when it installs the hook.
+	GameEvents() {
+	}
+
+	Object beginRound() {
+		return ROUND_TYPE.isEnabled() ? begin(new Round()) : null;
+	}
+
+	void endRound(Object event, HandCategory dealt, int discardMask, HandCategory category, int value) {
+		if (event == null)
+			return;
+		Round round = (Round) event;
+		round.end();
+		if (round.shouldCommit()) {
+			round.dealtCategory = dealt.name();
+			round.discardMask = discardMask;
+			round.category = category.name();
+			round.value = value;
+			round.commit();
+		}
+	}
+
+	Object beginDeal() {
+		return DEAL_TYPE.isEnabled() ? begin(new Deal()) : null;
+	}
+
+	void endDeal(Object event, HandCategory category) {
+		if (event == null)
+			return;
+		Deal deal = (Deal) event;
+		deal.end();
+		if (deal.shouldCommit()) {
+			deal.category = category.name();
+			deal.commit();
+		}
+	}
+
+	Object beginShuffle() {
+		return SHUFFLE_TYPE.isEnabled() ? begin(new Shuffle()) : null;
+	}
+
+	void endShuffle(Object event, int cardsDealt) {
+		if (event == null)
+			return;
+		Shuffle shuffle = (Shuffle) event;
+		shuffle.end();
+		if (shuffle.shouldCommit()) {
+			shuffle.cardsDealt = cardsDealt;
+			shuffle.commit();
+		}
+	}
+
+	Object beginEvaluation() {
+		return EVALUATION_TYPE.isEnabled() ? begin(new Evaluation()) : null;
+	}
+
+	void endEvaluation(Object event, HandCategory category, int value) {
+		if (event == null)
+			return;
+		Evaluation evaluation = (Evaluation) event;
+		evaluation.end();
+		if (evaluation.shouldCommit()) {
+			evaluation.category = category.name();
+			evaluation.value = value;
+			evaluation.commit();
+		}
+	}
+
+	Object beginDiscard() {
+		return DISCARD_TYPE.isEnabled() ? begin(new Discard()) : null;
+	}
+
+	void endDiscard(Object event, HandCategory dealt, int discardMask, HandCategory category) {
+		if (event == null)
+			return;
+		Discard discard = (Discard) event;
+		discard.end();
+		if (discard.shouldCommit()) {
+			discard.dealtCategory = dealt.name();
+			discard.discardMask = discardMask;
+			discard.category = category.name();
+			discard.commit();
+		}
+	}
+
+	private static Event begin(Event event) {
+		event.begin();
+		return event;
+	}
+}
@@ -0,0 +1,169 @@
+package poker;
+
+/*
+ * A set of cards held as a single long. Card i (see PlayingCard.getIndex())
+ * is bit i of the mask, so a whole deck fits in the low 52 bits and each suit
+ * occupies its own 13 bit lane with the twos in the lowest bit of the lane.
+ *
+ * Adding, removing and testing a card are single bit operations and the size
+ * of the set is one popcount. The static methods work directly on masks for
+ * code which wants to keep hands in a long[] or in local variables.
+ */
+public class CardSet {
+
+	public static void main(String[] args) {
+		DeckOfCards deck = new DeckOfCards();
+		CardSet set = new CardSet();
+
+		// Every card should survive the trip to an index and back.
+		boolean lossless = true;
+		for (int i = 0; i < DeckOfCards.DECK_SIZE; i++) {
+			PlayingCard card = PlayingCard.get(i);
+			if (card.getIndex() != i)
+				lossless = false;
+			set.add(deck.dealNext());
+		}
+		System.out.println("Index round trip" + (lossless ? " - Success" : " - Failed"));
+
+		// Dealing the whole deck into the set should give a full deck.
+		if (set.toLong() == FULL_DECK && set.size() == DeckOfCards.DECK_SIZE)
+			System.out.println("Full deck - Success");
+		else
+			System.out.println("Full deck - Failed");
+
+		// Each suit lane of a full deck should hold all 13 ranks.
+		for (int suit = 0; suit < DeckOfCards.NUMBER_OF_SUITS; suit++) {
+			if (set.getRankMask(suit) != RANK_MASK)
+				System.out.println("Rank mask - Failed");
+		}
+
+		PlayingCard aceOfSpades = PlayingCard.get(DeckOfCards.DECK_SIZE - 1);
+		set.remove(aceOfSpades);
+		if (!set.contains(aceOfSpades) && set.size() == DeckOfCards.DECK_SIZE - 1
+				&& set.getRankMask(PlayingCard.getSuitIndex(PlayingCard.SPADES)) == RANK_MASK >>> 1)
+			System.out.println("Remove - Success");
+		else
+			System.out.println("Remove - Failed");
+
+		CardSet hand = new CardSet();
+		deck.reset();
+		for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+			hand.add(deck.dealNext());
+		}
+		System.out.println("\nHand: " + hand + "(" + hand.size() + " cards)");
+		PlayingCard[] cards = hand.toPlayingCards();
+		System.out.println("Value: " + HandEvaluator.evaluate(hand.toLong()) + " / "
+				+ HandEvaluator.evaluate(cards[0], cards[1], cards[2], cards[3], cards[4]));
+	}
+
+	public static final long FULL_DECK = (1L << DeckOfCards.DECK_SIZE) - 1;
+	public static final int RANK_MASK = (1 << DeckOfCards.NUMBER_OF_RANKS) - 1;
+
+	public CardSet() {
+		this.cards = 0;
+	}
+
+	public CardSet(long cards) {
+		this.cards = cards;
+	}
+
+	public static long bit(int index) {
+		return 1L << index;
+	}
+
+	public static long bit(PlayingCard card) {
+		return 1L << card.getIndex();
+	}
+
+	// The ranks held in one suit as a 13 bit mask (bit 0 is the two).
+	public static int getRankMask(long cards, int suit) {
+		return (int) (cards >>> (suit * DeckOfCards.NUMBER_OF_RANKS)) & RANK_MASK;
+	}
+
+	// Every rank held in any suit.
+	public static int getRankMask(long cards) {
+		return getRankMask(cards, 0) | getRankMask(cards, 1) | getRankMask(cards, 2) | getRankMask(cards, 3);
+	}
+
+	public static int size(long cards) {
+		return Long.bitCount(cards);
+	}
+
+	public void add(int index) {
+		cards |= bit(index);
+	}
+
+	public void add(PlayingCard card) {
+		cards |= bit(card);
+	}
+
+	public void remove(int index) {
+		cards &= ~bit(index);
+	}
+
+	public void remove(PlayingCard card) {
+		cards &= ~bit(card);
+	}
+
+	public boolean contains(int index) {
+		return (cards & bit(index)) != 0;
+	}
+
+	public boolean contains(PlayingCard card) {
+		return (cards & bit(card)) != 0;
+	}
+
+	public int getRankMask(int suit) {
+		return getRankMask(cards, suit);
+	}
+
+	public int getRankMask() {
+		return getRankMask(cards);
+	}
+
+	public int size() {
+		return size(cards);
+	}
+
+	public boolean isEmpty() {
+		return cards == 0;
+	}
+
+	public void clear() {
+		cards = 0;
+	}
+
+	public long toLong() {
+		return cards;
+	}
+
+	// The cards in the set, lowest index first.
+	public PlayingCard[] toPlayingCards() {
+		PlayingCard[] result = new PlayingCard[size()];
+		long remaining = cards;
+		for (int i = 0; i < result.length; i++) {
+			result[i] = PlayingCard.get(Long.numberOfTrailingZeros(remaining));
+			remaining &= remaining - 1;
+		}
+		return result;
+	}
+
+	public boolean equals(Object other) {
+		return other instanceof CardSet && ((CardSet) other).cards == cards;
+	}
+
+	public int hashCode() {
+		return Long.hashCode(cards);
+	}
+
+	// Returns a string with each card in the set separated by a space.
+	public String toString() {
+		String str = "";
+		for (PlayingCard card : toPlayingCards()) {
+			str += card.toString() + " ";
+		}
+		return str;
+	}
+
+	private long cards;
+}
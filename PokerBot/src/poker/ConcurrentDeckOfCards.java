@@ -0,0 +1,170 @@
+package poker;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/*
+ * A deck which several threads can deal from at the same time. The cards sit
+ * in the same fixed array as in DeckOfCards, and the deal cursor is claimed
+ * with a compare-and-set: a thread reads the cursor, and only takes the cards
+ * after it if it manages to move the cursor past them before anyone else
+ * does. Each position is handed out by exactly one successful compare-and-set,
+ * so no card is dealt twice or lost, and the cursor never goes past the end
+ * of the deck. Dealing takes no locks; a thread which loses the race just
+ * reads the cursor again and retries.
+ *
+ * Several cards can be claimed with a single compare-and-set, so a whole hand
+ * comes off the deck in one step and is made of consecutive cards.
+ *
+ * Shuffling and resetting are not safe while other threads are dealing; the
+ * deck must be reset between rounds by one thread while nobody deals from it.
+ * The cursor is volatile and is written after the shuffle, so threads which
+ * read it afterwards see the shuffled cards.
+ */
+public class ConcurrentDeckOfCards extends DeckOfCards {
+
+	public static void main(String[] args) {
+		final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		final ConcurrentDeckOfCards deck = new ConcurrentDeckOfCards(7);
+
+		// Every round the threads race to deal the whole deck, some a card at
+		// a time and some a hand at a time, each noting the cards it got. When
+		// they have all run out the cards must cover the deck exactly once.
+		final long[] dealt = new long[threads];
+		final int[] failures = new int[1];
+		final CyclicBarrier barrier = new CyclicBarrier(threads, () -> {
+			long all = 0;
+			int count = 0;
+			for (int i = 0; i < threads; i++) {
+				if ((all & dealt[i]) != 0)
+					failures[0]++;
+				all |= dealt[i];
+				count += Long.bitCount(dealt[i]);
+				dealt[i] = 0;
+			}
+			if (all != CardSet.FULL_DECK || count != DECK_SIZE || deck.getNumberOfCardsDealt() != DECK_SIZE)
+				failures[0]++;
+			deck.reset();
+		});
+
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread(() -> {
+				PlayingCard[] hand = new PlayingCard[HandOfCards.HAND_SIZE];
+				try {
+					for (int r = 0; r < rounds; r++) {
+						long cards = 0;
+						if (id % 2 == 0) {
+							for (PlayingCard card = deck.dealNext(); card != null; card = deck.dealNext()) {
+								cards |= CardSet.bit(card.getIndex());
+							}
+						} else {
+							// Hands until too few cards are left, then the rest
+							// one by one.
+							while (deck.dealNext(hand)) {
+								for (PlayingCard card : hand) {
+									cards |= CardSet.bit(card.getIndex());
+								}
+							}
+							for (PlayingCard card = deck.dealNext(); card != null; card = deck.dealNext()) {
+								cards |= CardSet.bit(card.getIndex());
+							}
+						}
+						dealt[id] = cards;
+						barrier.await();
+					}
+				} catch (InterruptedException | BrokenBarrierException e) {
+					failures[0]++;
+				}
+			});
+		}
+
+		long start = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				failures[0]++;
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(rounds + " rounds on " + threads + " threads in " + elapsed / 1000000 + "ms");
+		System.out.println("Every card dealt exactly once" + (failures[0] == 0 ? " - Success" : " - Failed"));
+
+		// A claim larger than what is left takes nothing.
+		deck.reset();
+		PlayingCard[] tooMany = new PlayingCard[DECK_SIZE - 2];
+		boolean first = deck.dealNext(tooMany);
+		boolean second = deck.dealNext(tooMany);
+		System.out.println("Claim past the end" + (first && !second && deck.getNumberOfCardsDealt() == DECK_SIZE - 2
+				&& deck.dealNext() != null && deck.dealNext() != null && deck.dealNext() == null ? " - Success"
+						: " - Failed"));
+	}
+
+	public ConcurrentDeckOfCards() {
+		super();
+	}
+
+	public ConcurrentDeckOfCards(long seed) {
+		super(seed);
+	}
+
+	public ConcurrentDeckOfCards(RandomSource random) {
+		super(random);
+	}
+
+	// Shuffle all 52 cards and move the cursor back to the start. Not safe
+	// while other threads are dealing.
+	public void reset() {
+		shuffle(0);
+		cardsDealt = 0;
+	}
+
+	// Not safe while other threads are dealing.
+	public void shuffleUndealt() {
+		shuffle(cardsDealt);
+	}
+
+	public PlayingCard dealNext() {
+		int dealt;
+		do {
+			dealt = cardsDealt;
+			if (dealt >= DECK_SIZE)
+				return null;
+		} while (!CURSOR.compareAndSet(this, dealt, dealt + 1));
+		return deck[dealt];
+	}
+
+	/*
+	 * Deal cards.length consecutive cards into cards with one compare-and-set.
+	 * Either every card is dealt and true is returned, or, when there are not
+	 * enough cards left, none are and false is returned.
+	 */
+	public boolean dealNext(PlayingCard[] cards) {
+		int dealt;
+		do {
+			dealt = cardsDealt;
+			if (dealt + cards.length > DECK_SIZE)
+				return false;
+		} while (!CURSOR.compareAndSet(this, dealt, dealt + cards.length));
+		System.arraycopy(deck, dealt, cards, 0, cards.length);
+		return true;
+	}
+
+	public int getNumberOfCardsDealt() {
+		return cardsDealt;
+	}
+
+	// Written by reset() and claimed by dealNext(). Starts at 0, before the
+	// super constructor calls reset().
+	private volatile int cardsDealt;
+
+	private static final AtomicIntegerFieldUpdater<ConcurrentDeckOfCards> CURSOR = AtomicIntegerFieldUpdater
+			.newUpdater(ConcurrentDeckOfCards.class, "cardsDealt");
+}
@@ -0,0 +1,204 @@
+package poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * What PokerPlayer.decide() came up with in its time budget: the cards to
+ * discard, how to bet, the equity the decision was based on and how many
+ * random showdowns were played to estimate it.
+ */
+public class Decision {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		DeckOfCards deck = new DeckOfCards(43L);
+		PokerPlayer player = new PokerPlayer(deck);
+		player.dealHand();
+
+		// Without a discard table the best discard would take DiscardEvaluator
+		// tens of microseconds, so the first answer is the heuristic's.
+		Decision heuristic = player.decide(0, 3);
+		System.out.println("No table, no budget: " + heuristic);
+		System.out.println("Heuristic answer without a table" + (heuristic.getSamples() == 0
+				&& heuristic.getDiscard() == player.getHand().getHeuristicDiscard() ? " - Success" : " - Failed"));
+
+		// A strategy of the player's own gives the first answer, table or not.
+		DiscardStrategy own = hand -> hand.isHighHand() ? 0b11100 : 0;
+		player.setDiscardStrategy(own);
+		boolean ownAnswer = true;
+		for (int i = 0; i < 1000; i++) {
+			deck.reset();
+			player.dealHand();
+			if (player.decide(0, 3).getDiscard() != own.getDiscard(player.getHand()))
+				ownAnswer = false;
+		}
+		player.setDiscardStrategy(DiscardStrategy.BEST);
+		System.out.println("Own strategy's answer" + (ownAnswer ? " - Success" : " - Failed"));
+
+		// Small budgets are kept, with or without a table, on a best effort
+		// basis. The odd decision is held up by the machine (the first write
+		// to a fresh page of the heap, or the VM not being scheduled for a
+		// few milliseconds), which a JVM started with -XX:+AlwaysPreTouch and
+		// a fixed heap mostly does not see. So the median and 95th percentile
+		// are held close to the budget, the 99th percentile only loosely, and
+		// the mean and the worst case are just printed.
+		for (int i = 0; i < 20000; i++) {
+			deck.reset();
+			player.dealHand();
+			player.decide(10000, 3);
+		}
+		boolean kept = true;
+		for (long budget : new long[] { 0, 10000 }) {
+			long[] elapsed = new long[5000];
+			long total = 0;
+			for (int i = 0; i < elapsed.length; i++) {
+				deck.reset();
+				player.dealHand();
+				elapsed[i] = player.decide(budget, 3).getElapsedNanos();
+				total += elapsed[i];
+			}
+			Arrays.sort(elapsed);
+			long median = elapsed[elapsed.length / 2];
+			long p95 = elapsed[elapsed.length * 95 / 100];
+			long p99 = elapsed[elapsed.length * 99 / 100];
+			System.out.println(budget / 1000 + "us without a table: mean " + total / elapsed.length + "ns, median "
+					+ median + "ns, 95th percentile " + p95 + "ns, 99th percentile " + p99 + "ns, max "
+					+ elapsed[elapsed.length - 1] + "ns");
+			if (median > budget + 5000 || p95 > budget + 25000 || p99 > budget + 200000)
+				kept = false;
+		}
+		System.out.println("Small budgets kept" + (kept ? " - Success" : " - Failed"));
+
+		File file = File.createTempFile("discards", ".dat");
+		file.deleteOnExit();
+		DiscardTable.generate(file.getPath());
+		HandOfCards.setDiscardTable(DiscardTable.load(file.getPath()));
+		deck.reset();
+		player.dealHand();
+
+		// No time at all still gives the strategy's discard, which with a
+		// table is the best one.
+		Decision none = player.decide(0, 3);
+		System.out.println("No budget: " + none);
+		System.out.println("Answer without samples" + (none.getSamples() == 0
+				&& none.getDiscard() == player.getDiscardStrategy().getDiscard(player.getHand()) ? " - Success"
+						: " - Failed"));
+
+		// Warm up so the budgets below are spent in compiled code.
+		for (int i = 0; i < 2000; i++) {
+			player.decide(1000000, 3);
+		}
+
+		// More time, more samples, and the deadline is kept. Each budget is
+		// tried five times and the median is checked, so that one decision
+		// held up by the machine does not decide the test.
+		boolean moreSamples = true, inTime = true;
+		long lastSamples = -1;
+		for (long budget = 10000; budget <= 10000000; budget *= 10) {
+			long[] elapsed = new long[5];
+			long[] samples = new long[elapsed.length];
+			for (int i = 0; i < elapsed.length; i++) {
+				Decision decision = player.decide(budget, 3);
+				if (i == 0)
+					System.out.println(budget / 1000 + "us: " + decision);
+				elapsed[i] = decision.getElapsedNanos();
+				samples[i] = decision.getSamples();
+			}
+			Arrays.sort(elapsed);
+			Arrays.sort(samples);
+			if (samples[samples.length / 2] <= lastSamples)
+				moreSamples = false;
+			if (budget >= 100000 && elapsed[elapsed.length / 2] > budget + 50000)
+				inTime = false;
+			lastSamples = samples[samples.length / 2];
+		}
+		System.out.println("Anytime refinement" + (moreSamples && inTime ? " - Success" : " - Failed"));
+
+		// Many players deciding at once on few cores get fewer samples each.
+		// Most answer on time, but one left waiting for a core answers late
+		// by however long it waited, which is printed and not checked.
+		final int threads = 4 * Runtime.getRuntime().availableProcessors();
+		final int decisions = 200;
+		final long budget = 1000000;
+		final long[][] overshoot = new long[threads][decisions];
+		final long[] samples = new long[threads];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread(() -> {
+				DeckOfCards d = new DeckOfCards(id);
+				PokerPlayer p = new PokerPlayer(d);
+				for (int i = 0; i < decisions; i++) {
+					d.reset();
+					p.dealHand();
+					Decision decision = p.decide(budget, 3);
+					overshoot[id][i] = decision.getElapsedNanos() - budget;
+					samples[id] += decision.getSamples();
+				}
+			});
+			workers[t].start();
+		}
+		long[] all = new long[threads * decisions];
+		long totalSamples = 0;
+		for (int t = 0; t < threads; t++) {
+			workers[t].join();
+			System.arraycopy(overshoot[t], 0, all, t * decisions, decisions);
+			totalSamples += samples[t];
+		}
+		Arrays.sort(all);
+		System.out.println(threads + " threads at once: " + totalSamples / all.length
+				+ " samples per decision, overshoot median " + all[all.length / 2] / 1000 + "us, 99th percentile "
+				+ all[all.length * 99 / 100] / 1000 + "us");
+	}
+
+	// How to bet. There is no betting in the game yet, so this is advice only.
+	public enum Action {
+		FOLD, CALL, RAISE
+	}
+
+	Decision(int discard, Action action, Equity equity, long samples, long elapsedNanos) {
+		this.discard = discard;
+		this.action = action;
+		this.equity = equity;
+		this.samples = samples;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	// The cards to throw away, as a discard mask (see DiscardStrategy).
+	public int getDiscard() {
+		return discard;
+	}
+
+	public Action getAction() {
+		return action;
+	}
+
+	// How the hand after the discard did in the samples. With no samples
+	// every probability is NaN.
+	public Equity getEquity() {
+		return equity;
+	}
+
+	// The number of random showdowns played.
+	public long getSamples() {
+		return samples;
+	}
+
+	// How long the decision took.
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public String toString() {
+		return "Discard " + Integer.toBinaryString(discard) + ", " + action + ", equity "
+				+ String.format("%.4f", equity.getEquity()) + " from " + samples + " samples in "
+				+ elapsedNanos / 1000 + "us";
+	}
+
+	private final int discard;
+	private final Action action;
+	private final Equity equity;
+	private final long samples;
+	private final long elapsedNanos;
+}
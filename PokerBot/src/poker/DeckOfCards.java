@@ -1,9 +1,7 @@
 package poker;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class DeckOfCards {
 
@@ -32,74 +30,198 @@ public class DeckOfCards {
 			PlayingCard card1 = test.dealNext();
 			System.out.println(card1);
 		}
+
+		// Two decks with the same seed should deal the same cards.
+		System.out.println("\nDealing two decks with the same seed.");
+		DeckOfCards seeded1 = new DeckOfCards(42);
+		DeckOfCards seeded2 = new DeckOfCards(42);
+		boolean sameOrder = true;
+		for (int i = 0; i < DECK_SIZE; i++) {
+			if (seeded1.dealNext() != seeded2.dealNext())
+				sameOrder = false;
+		}
+		System.out.println("Seeded decks" + (sameOrder ? " - Success" : " - Failed"));
+
+		// Shuffling the undealt cards must not touch the cards already dealt,
+		// and must not deal any card twice.
+		seeded1.reset();
+		CardSet dealt = new CardSet();
+		PlayingCard[] firstFive = new PlayingCard[5];
+		for (int i = 0; i < 5; i++) {
+			firstFive[i] = seeded1.dealNext();
+			dealt.add(firstFive[i]);
+		}
+		seeded1.shuffleUndealt();
+		boolean prefixKept = true;
+		for (int i = 0; i < 5; i++) {
+			if (seeded1.deck[i] != firstFive[i])
+				prefixKept = false;
+		}
+		for (int i = 5; i < DECK_SIZE; i++) {
+			dealt.add(seeded1.dealNext());
+		}
+		if (prefixKept && dealt.toLong() == CardSet.FULL_DECK)
+			System.out.println("Shuffle undealt - Success");
+		else
+			System.out.println("Shuffle undealt - Failed");
+
+		// Every card should end up in every position about equally often.
+		final int shuffles = 520000;
+		int[][] positions = new int[DECK_SIZE][DECK_SIZE];
+		for (int i = 0; i < shuffles; i++) {
+			seeded1.reset();
+			for (int j = 0; j < DECK_SIZE; j++) {
+				positions[j][seeded1.dealNext().getIndex()]++;
+			}
+		}
+		int expected = shuffles / DECK_SIZE, worst = 0;
+		for (int i = 0; i < DECK_SIZE; i++) {
+			for (int j = 0; j < DECK_SIZE; j++) {
+				worst = Math.max(worst, Math.abs(positions[i][j] - expected));
+			}
+		}
+		// 10,000 per cell has a standard deviation of about 100.
+		System.out.println("Uniform shuffle" + (worst < 600 ? " - Success" : " - Failed") + " (worst cell off by "
+				+ worst + ")");
 	}
 
+	/*
+	 * The deck is a fixed array holding each of the 52 cards exactly once and a
+	 * cursor (numCardsDealt) marking the top of the deck. Cards in front of the
+	 * cursor have been dealt, the rest are still to be dealt in array order.
+	 * Nothing is ever removed from or inserted into the array, so dealing,
+	 * returning and resetting never shift cards around.
+	 *
+	 * A DeckOfCards must only be used by one thread at a time. Use a
+	 * ConcurrentDeckOfCards to deal from one deck on several threads.
+	 */
 	public DeckOfCards() {
-		reset();
+		this(THREAD_LOCAL_RANDOM);
 	}
 
-	// Recreate the deck and shuffle it.
-	public void reset() {
-		// make the deck thread safe
-		deck = Collections.synchronizedList(new ArrayList<PlayingCard>());
+	// Shuffle with a generator seeded with the given seed so every deal can be
+	// reproduced.
+	public DeckOfCards(long seed) {
+		this(new SplittableRandom(seed)::nextInt);
+	}
 
-		char[] suits = { PlayingCard.HEARTS, PlayingCard.DIAMONDS, PlayingCard.CLUBS, PlayingCard.SPADES };
+	public DeckOfCards(RandomSource random) {
+		this.random = random;
+		for (int i = 0; i < DECK_SIZE; i++) {
+			deck[i] = PlayingCard.get(i);
+		}
+		reset();
+	}
 
-		numCardsDealt = 0;
-		int suitTrack = 0;
+	public void setRandomSource(RandomSource random) {
+		this.random = random;
+	}
 
-		// Create each card in the deck and add them to the deck ArrayList.
-		for (int i = 0; i < NUMBER_OF_SUITS; i++) {
-			char currentSuit = suits[suitTrack++];
-			for (int j = PlayingCard.TWO_GAME_VALUE; j <= PlayingCard.TEN_GAME_VALUE; j++) {
-				deck.add(new PlayingCard("" + j, currentSuit, j, j));
+	// Put every card back in the deck and shuffle it. The array always holds
+	// all 52 cards so this only has to move the cursor back to the start.
+	public void reset() {
+		long start = 0;
+		if (Metrics.ENABLED) {
+			pendingCardsDealt += numCardsDealt;
+			if (++pendingResets == Metrics.SAMPLE_RATE) {
+				Metrics.HANDS.addResets(pendingResets, pendingCardsDealt);
+				pendingResets = 0;
+				pendingCardsDealt = 0;
+				start = System.nanoTime();
 			}
-			deck.add(new PlayingCard("J", currentSuit, PlayingCard.JACK_GAME_VALUE, PlayingCard.JACK_GAME_VALUE));
-			deck.add(new PlayingCard("Q", currentSuit, PlayingCard.QUEEN_GAME_VALUE, PlayingCard.QUEEN_GAME_VALUE));
-			deck.add(new PlayingCard("K", currentSuit, PlayingCard.KING_GAME_VALUE, PlayingCard.KING_GAME_VALUE));
-			deck.add(new PlayingCard("A", currentSuit, 1, PlayingCard.ACE_GAME_VALUE));
 		}
 
+		numCardsDealt = 0;
 		shuffle();
+		if (start != 0) {
+			Metrics.RESET.record(System.nanoTime() - start);
+			// Time the next shuffle and deal on their own.
+			timeNextShuffle = true;
+			timeNextDeal = true;
+		}
 	}
 
-	// Shuffle the deck by swapping cards 10000 times.
+	/*
+	 * Shuffle all 52 cards with a Fisher-Yates shuffle: 51 swaps, each one
+	 * picking a card uniformly from the cards not placed yet, so every order of
+	 * the deck is equally likely. This includes cards that have already been
+	 * dealt, so only call it on a full deck (reset() does this for you).
+	 */
 	public void shuffle() {
-		Random rand = new Random();
-
-		for (int i = 0; i < 10000; i++) {
-			int rand1 = rand.nextInt((DECK_SIZE - 1) + 1);
-			int rand2 = rand.nextInt((DECK_SIZE - 1) + 1);
-			Collections.swap(this.deck, rand1, rand2);
-		}
+		shuffle(0);
 	}
 
-	// Remove the card from the top of the deck and return it (to a player).
-	public PlayingCard dealNext() {
-		if (numCardsDealt >= DECK_SIZE)
-			return null;
+	// Shuffle only the cards that have not been dealt yet, leaving the dealt
+	// cards where they are.
+	public void shuffleUndealt() {
+		shuffle(numCardsDealt);
+	}
 
-		PlayingCard card = null;
+	// Shuffle the cards from position start to the end of the deck.
+	void shuffle(int start) {
+		long begin = 0;
+		if (Metrics.ENABLED && timeNextShuffle) {
+			timeNextShuffle = false;
+			begin = System.nanoTime();
+		}
 
-		if (deck.size() > 0)
-			card = deck.get(0);
-		else
-			return null;
+		Object event = GameEventHook.HOOK.beginShuffle();
+		for (int i = DECK_SIZE - 1; i > start; i--) {
+			int j = start + random.nextInt(i - start + 1);
+			PlayingCard temp = deck[i];
+			deck[i] = deck[j];
+			deck[j] = temp;
+		}
+		GameEventHook.HOOK.endShuffle(event, start);
+		if (begin != 0)
+			Metrics.SHUFFLE.record(System.nanoTime() - begin);
+	}
 
-		deck.remove(0);
-		numCardsDealt++;
+	// Take the card from the top of the deck and return it (to a player).
+	// Returns null once all 52 cards have been dealt.
+	public PlayingCard dealNext() {
+		long start = 0;
+		if (Metrics.ENABLED && timeNextDeal) {
+			// Dealing takes less time than reading the clock, so this mostly
+			// measures the clock.
+			timeNextDeal = false;
+			start = System.nanoTime();
+		}
 
+		PlayingCard card = numCardsDealt < DECK_SIZE ? deck[numCardsDealt++] : null;
+		if (start != 0)
+			Metrics.DEAL.record(System.nanoTime() - start);
 		return card;
 	}
 
-	// Return a card (from a hand/discarded) to the deck.
+	/*
+	 * Return a card (from a hand/discarded) to the deck. Returned cards go to
+	 * the bottom of the deck, underneath every card that has not been dealt
+	 * yet. No more than 52 cards are dealt between resets, so a card on the
+	 * bottom is never reached before the next reset() puts it back in play
+	 * anyway; there is nothing to move.
+	 */
 	public void returnCard(PlayingCard card) {
-		if (card == null) return;
-		deck.add(card);
 	}
 	
 	public static final int DECK_SIZE = 52;
 	public static final int NUMBER_OF_SUITS = 4;
+	public static final int NUMBER_OF_RANKS = 13;
 	private int numCardsDealt;
-	private List<PlayingCard> deck;
+	final PlayingCard[] deck = new PlayingCard[DECK_SIZE];
+	private RandomSource random;
+	// Resets, and the cards dealt before them, not added to Metrics.HANDS
+	// yet.
+	private int pendingResets;
+	private long pendingCardsDealt;
+	// Metrics times every SAMPLE_RATE-th reset, when the counts above are
+	// added up, and the next shuffle and deal after it. These calls are so
+	// cheap that counting each of them, as HandOfCards does, showed up in
+	// the rounds per second.
+	private boolean timeNextShuffle;
+	private boolean timeNextDeal;
+
+	// The default source. It looks up the generator of whichever thread is
+	// shuffling, so decks can be handed between threads safely.
+	private static final RandomSource THREAD_LOCAL_RANDOM = bound -> ThreadLocalRandom.current().nextInt(bound);
 }
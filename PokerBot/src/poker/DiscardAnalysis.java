@@ -0,0 +1,83 @@
+package poker;
+
+/*
+ * The exact outcome of each of the 32 ways of discarding from one hand, as
+ * worked out by DiscardEvaluator. A discard is given as a mask where bit i
+ * means the card at position i of the hand is thrown away, so 0 keeps the
+ * whole hand and 31 draws five new cards.
+ */
+public class DiscardAnalysis {
+
+	DiscardAnalysis(int[] cards, long[] totals) {
+		this.cards = cards;
+		this.totals = totals;
+	}
+
+	// The totals are stored by the mask of the cards kept.
+	private int offset(int discardMask) {
+		return (~discardMask & (DiscardEvaluator.NUMBER_OF_DISCARDS - 1)) * DiscardEvaluator.STATS_SIZE;
+	}
+
+	// The number of different hands this discard can end in.
+	public long getNumberOfDraws(int discardMask) {
+		long draws = 0;
+		for (int k = 0; k < DiscardEvaluator.NUMBER_OF_CATEGORIES; k++) {
+			draws += totals[offset(discardMask) + k];
+		}
+		return draws;
+	}
+
+	// How many of the possible final hands fall in the given category.
+	public long getCategoryCount(int discardMask, HandCategory category) {
+		return totals[offset(discardMask) + category.ordinal()];
+	}
+
+	public double getCategoryProbability(int discardMask, HandCategory category) {
+		return (double) getCategoryCount(discardMask, category) / getNumberOfDraws(discardMask);
+	}
+
+	// The sum of the (doubled) strengths of the possible final hands, see
+	// DiscardEvaluator.getStrength().
+	public long getStrengthSum(int discardMask) {
+		return totals[offset(discardMask) + DiscardEvaluator.STRENGTH];
+	}
+
+	/*
+	 * The chance that the hand after this discard beats a random five card
+	 * hand (ties count as half), averaged over every possible draw.
+	 */
+	public double getExpectedStrength(int discardMask) {
+		return getStrengthSum(discardMask) / (2.0 * HandRankTable.NUMBER_OF_HANDS * getNumberOfDraws(discardMask));
+	}
+
+	// The discard with the highest expected strength, throwing away at most
+	// maxDiscards cards. Ties go to the discard which throws away fewer cards.
+	public int getBestDiscard(int maxDiscards) {
+		int best = 0;
+		for (int discardMask = 1; discardMask < DiscardEvaluator.NUMBER_OF_DISCARDS; discardMask++) {
+			int size = Integer.bitCount(discardMask);
+			if (size > maxDiscards)
+				continue;
+			double difference = getExpectedStrength(discardMask) - getExpectedStrength(best);
+			if (difference > 0 || difference == 0 && size < Integer.bitCount(best))
+				best = discardMask;
+		}
+		return best;
+	}
+
+	public int getBestDiscard() {
+		return getBestDiscard(HandOfCards.HAND_SIZE);
+	}
+
+	// Returns the cards in the hand separated by a space.
+	public String toString() {
+		String str = "";
+		for (int card : cards) {
+			str += PlayingCard.get(card).toString() + " ";
+		}
+		return str;
+	}
+
+	private final int[] cards;
+	private final long[] totals;
+}
@@ -0,0 +1,310 @@
+package poker;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/*
+ * Works out exactly what each of the 32 ways of discarding from a five card
+ * hand is worth, by counting every hand the draw could end in rather than
+ * guessing with discard percentages.
+ *
+ * The unseen cards are the 47 cards not in the hand. Keeping the cards H and
+ * discarding the rest ends in one of the hands made of H plus 5 - |H| unseen
+ * cards, i.e. a five card hand which contains H and none of the discarded
+ * cards. Scoring those one at a time for all 32 choices would mean scoring
+ * 2,598,960 hands per decision, so the counting is done with inclusion and
+ * exclusion instead. Let F(X) be the totals over every five card hand that
+ * contains the cards X. Then the totals for keeping H, with O the whole hand,
+ * are
+ *
+ *   G(H) = sum over X with H <= X <= O of (-1)^|X - H| F(X)
+ *
+ * (start with every hand containing H, take away those containing each
+ * discarded card, add back those containing two of them and so on). F of every
+ * set of up to three cards is worked out once when the class is loaded, so
+ * only F of four and five cards is counted on each call, which takes 241
+ * evaluations.
+ *
+ * The totals kept for a set of hands are how many fall in each HandCategory
+ * and the sum of their strengths, where the strength of a hand is how many of
+ * the 2,598,960 possible hands it beats (ties count as half, see getStrength()).
+ * The expected strength divided by the number of hands is the chance of
+ * beating a random hand, which is what the best discard maximises.
+ */
+public class DiscardEvaluator {
+
+	public static void main(String[] args) {
+		// Compare the counts for every discard with scoring every possible
+		// final hand (keeping the held cards and none of the discarded ones).
+		SplittableRandom random = new SplittableRandom(10);
+		boolean matches = true;
+		for (int i = 0; i < 20; i++) {
+			int[] cards = randomHand(random);
+			DiscardAnalysis analysis = evaluate(cards);
+			for (int discardMask = 0; discardMask < NUMBER_OF_DISCARDS; discardMask++) {
+				long[] expected = countDraws(cards, discardMask);
+				for (int k = 0; k < NUMBER_OF_CATEGORIES; k++) {
+					if (analysis.getCategoryCount(discardMask, HandCategory.values()[k]) != expected[k])
+						matches = false;
+				}
+				if (analysis.getStrengthSum(discardMask) != expected[STRENGTH])
+					matches = false;
+			}
+		}
+		System.out.println("Exact draw counts" + (matches ? " - Success" : " - Failed"));
+
+		// Holding a pair of aces beats drawing five new cards, and holding a
+		// royal flush is best of all.
+		int[] pairOfAces = { 12, 25, 2, 17, 34 };
+		int[] royalFlush = { 8, 9, 10, 11, 12 };
+		DiscardAnalysis aces = evaluate(pairOfAces);
+		System.out.println("Hold pair of aces"
+				+ (aces.getExpectedStrength(0x1C) > aces.getExpectedStrength(0x1F) ? " - Success" : " - Failed"));
+		System.out.println("Hold royal flush" + (evaluate(royalFlush).getBestDiscard() == 0 ? " - Success" : " - Failed"));
+
+		// Print the choices for one hand.
+		DiscardAnalysis example = evaluate(pairOfAces);
+		System.out.println("\nHand: " + example);
+		System.out.println("Discard\tDraws\tExpected strength");
+		for (int discardMask = 0; discardMask < NUMBER_OF_DISCARDS; discardMask++) {
+			System.out.println(Integer.toBinaryString(discardMask) + "\t" + example.getNumberOfDraws(discardMask) + "\t"
+					+ example.getExpectedStrength(discardMask));
+		}
+		System.out.println("Best discard: " + Integer.toBinaryString(example.getBestDiscard()) + " (at most "
+				+ MAX_DISCARDS + " cards: " + Integer.toBinaryString(example.getBestDiscard(MAX_DISCARDS)) + ")");
+
+		// Time decisions on random hands.
+		int[][] hands = new int[10000][];
+		for (int i = 0; i < hands.length; i++) {
+			hands[i] = randomHand(random);
+		}
+		long elapsed = 0;
+		int checksum = 0;
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			for (int[] hand : hands) {
+				checksum += evaluate(hand).getBestDiscard();
+			}
+			elapsed = System.nanoTime() - start;
+		}
+		System.out.println("\nAverage time per decision: " + elapsed / hands.length / 1000.0 + "us (" + checksum + ")");
+	}
+
+	private static int[] randomHand(SplittableRandom random) {
+		DeckOfCards deck = new DeckOfCards(random::nextInt);
+		int[] cards = new int[HandOfCards.HAND_SIZE];
+		for (int i = 0; i < cards.length; i++) {
+			cards[i] = deck.dealNext().getIndex();
+		}
+		return cards;
+	}
+
+	// Score every draw for one discard the slow way. Only used for testing.
+	private static long[] countDraws(int[] cards, int discardMask) {
+		long[] totals = new long[STATS_SIZE];
+		for (int c0 = 0; c0 < DeckOfCards.DECK_SIZE; c0++)
+			for (int c1 = c0 + 1; c1 < DeckOfCards.DECK_SIZE; c1++)
+				for (int c2 = c1 + 1; c2 < DeckOfCards.DECK_SIZE; c2++)
+					for (int c3 = c2 + 1; c3 < DeckOfCards.DECK_SIZE; c3++)
+						for (int c4 = c3 + 1; c4 < DeckOfCards.DECK_SIZE; c4++) {
+							long result = CardSet.bit(c0) | CardSet.bit(c1) | CardSet.bit(c2) | CardSet.bit(c3)
+									| CardSet.bit(c4);
+							boolean possible = true;
+							for (int i = 0; i < cards.length; i++) {
+								boolean inResult = (result & CardSet.bit(cards[i])) != 0;
+								boolean discarded = (discardMask & (1 << i)) != 0;
+								if (inResult == discarded)
+									possible = false;
+							}
+							if (possible)
+								add(totals, 0, HandEvaluator.evaluate(result));
+						}
+		return totals;
+	}
+
+	public static final int NUMBER_OF_DISCARDS = 1 << HandOfCards.HAND_SIZE;
+	public static final int MAX_DISCARDS = 3;
+
+	// Layout of the totals kept for a set of hands: a count for each category
+	// followed by the sum of their strengths.
+	static final int NUMBER_OF_CATEGORIES = HandCategory.values().length;
+	static final int STRENGTH = NUMBER_OF_CATEGORIES;
+	static final int STATS_SIZE = NUMBER_OF_CATEGORIES + 1;
+
+	// The distinct hand values, lowest first, and the strength of each.
+	private static final int[] VALUES;
+	private static final int[] STRENGTHS;
+
+	// F of the empty set, of each card, of each pair and of each triple of
+	// cards. Pairs and triples are numbered by their colex index, see
+	// pairIndex() and tripleIndex().
+	private static final long[] ALL_HANDS = new long[STATS_SIZE];
+	private static final long[] SINGLE_CARDS = new long[DeckOfCards.DECK_SIZE * STATS_SIZE];
+	private static final long[] CARD_PAIRS = new long[pairIndex(0, DeckOfCards.DECK_SIZE) * STATS_SIZE];
+	private static final long[] CARD_TRIPLES = new long[tripleIndex(0, 1, DeckOfCards.DECK_SIZE) * STATS_SIZE];
+
+	static {
+		int[] handValues = new int[HandRankTable.NUMBER_OF_HANDS];
+		int n = 0;
+		for (int c0 = 0; c0 < DeckOfCards.DECK_SIZE; c0++)
+			for (int c1 = c0 + 1; c1 < DeckOfCards.DECK_SIZE; c1++)
+				for (int c2 = c1 + 1; c2 < DeckOfCards.DECK_SIZE; c2++)
+					for (int c3 = c2 + 1; c3 < DeckOfCards.DECK_SIZE; c3++)
+						for (int c4 = c3 + 1; c4 < DeckOfCards.DECK_SIZE; c4++)
+							handValues[n++] = HandEvaluator.evaluate(c0, c1, c2, c3, c4);
+
+		// A hand beats every hand with a lower value and ties with the rest of
+		// its own value. Strengths are doubled so the half for a tie stays an
+		// integer.
+		int[] sorted = handValues.clone();
+		Arrays.sort(sorted);
+		VALUES = Arrays.stream(sorted).distinct().toArray();
+		STRENGTHS = new int[VALUES.length];
+		int below = 0;
+		for (int i = 0; i < VALUES.length; i++) {
+			int equal = 0;
+			while (below + equal < sorted.length && sorted[below + equal] == VALUES[i]) {
+				equal++;
+			}
+			STRENGTHS[i] = 2 * below + equal;
+			below += equal;
+		}
+
+		n = 0;
+		int[] cards = new int[HandOfCards.HAND_SIZE];
+		for (cards[0] = 0; cards[0] < DeckOfCards.DECK_SIZE; cards[0]++)
+			for (cards[1] = cards[0] + 1; cards[1] < DeckOfCards.DECK_SIZE; cards[1]++)
+				for (cards[2] = cards[1] + 1; cards[2] < DeckOfCards.DECK_SIZE; cards[2]++)
+					for (cards[3] = cards[2] + 1; cards[3] < DeckOfCards.DECK_SIZE; cards[3]++)
+						for (cards[4] = cards[3] + 1; cards[4] < DeckOfCards.DECK_SIZE; cards[4]++) {
+							int category = handValues[n] / HandOfCards.TIER_INTERVAL;
+							int strength = getStrength(handValues[n++]);
+							add(ALL_HANDS, 0, category, strength);
+							for (int a = 0; a < HandOfCards.HAND_SIZE; a++) {
+								add(SINGLE_CARDS, cards[a] * STATS_SIZE, category, strength);
+								for (int b = a + 1; b < HandOfCards.HAND_SIZE; b++) {
+									add(CARD_PAIRS, pairIndex(cards[a], cards[b]) * STATS_SIZE, category, strength);
+									for (int c = b + 1; c < HandOfCards.HAND_SIZE; c++) {
+										add(CARD_TRIPLES, tripleIndex(cards[a], cards[b], cards[c]) * STATS_SIZE,
+												category, strength);
+									}
+								}
+							}
+						}
+	}
+
+	// Colex index of the cards a < b, and of a < b < c.
+	private static int pairIndex(int a, int b) {
+		return b * (b - 1) / 2 + a;
+	}
+
+	private static int tripleIndex(int a, int b, int c) {
+		return c * (c - 1) * (c - 2) / 6 + pairIndex(a, b);
+	}
+
+	/*
+	 * The number of the 2,598,960 possible hands that a hand with this value
+	 * beats, plus half the number it ties with, all doubled.
+	 */
+	static int getStrength(int gameValue) {
+		return STRENGTHS[Arrays.binarySearch(VALUES, gameValue)];
+	}
+
+	// Count one hand into the totals starting at offset.
+	private static void add(long[] totals, int offset, int category, int strength) {
+		totals[offset + category]++;
+		totals[offset + STRENGTH] += strength;
+	}
+
+	private static void add(long[] totals, int offset, int gameValue) {
+		add(totals, offset, gameValue / HandOfCards.TIER_INTERVAL, getStrength(gameValue));
+	}
+
+	public static DiscardAnalysis evaluate(PlayingCard[] hand) {
+		int[] cards = new int[HandOfCards.HAND_SIZE];
+		for (int i = 0; i < cards.length; i++) {
+			cards[i] = hand[i].getIndex();
+		}
+		return evaluate(cards);
+	}
+
+	/*
+	 * Work out the outcome of every discard from the five cards given by their
+	 * deck index. Bit i of a discard mask stands for cards[i].
+	 */
+	public static DiscardAnalysis evaluate(int[] cards) {
+		// Visit the cards lowest first so the held cards come out sorted, as
+		// pairIndex() and tripleIndex() expect.
+		int[] order = new int[HandOfCards.HAND_SIZE];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+			for (int j = i; j > 0 && cards[order[j - 1]] > cards[order[j]]; j--) {
+				int swap = order[j];
+				order[j] = order[j - 1];
+				order[j - 1] = swap;
+			}
+		}
+
+		// F(X) for every subset X of the hand, indexed by the mask of the
+		// positions in X.
+		long[] totals = new long[NUMBER_OF_DISCARDS * STATS_SIZE];
+		int[] held = new int[HandOfCards.HAND_SIZE];
+		for (int subset = 0; subset < NUMBER_OF_DISCARDS; subset++) {
+			int size = 0;
+			long heldCards = 0;
+			for (int i : order) {
+				if ((subset & (1 << i)) != 0) {
+					held[size++] = cards[i];
+					heldCards |= CardSet.bit(cards[i]);
+				}
+			}
+
+			int offset = subset * STATS_SIZE;
+			switch (size) {
+			case 0:
+				System.arraycopy(ALL_HANDS, 0, totals, offset, STATS_SIZE);
+				break;
+
+			case 1:
+				System.arraycopy(SINGLE_CARDS, held[0] * STATS_SIZE, totals, offset, STATS_SIZE);
+				break;
+
+			case 2:
+				System.arraycopy(CARD_PAIRS, pairIndex(held[0], held[1]) * STATS_SIZE, totals, offset, STATS_SIZE);
+				break;
+
+			case 3:
+				System.arraycopy(CARD_TRIPLES, tripleIndex(held[0], held[1], held[2]) * STATS_SIZE, totals, offset,
+						STATS_SIZE);
+				break;
+
+			case 4:
+				for (int a = 0; a < DeckOfCards.DECK_SIZE; a++) {
+					if ((heldCards & CardSet.bit(a)) == 0)
+						add(totals, offset, HandEvaluator.evaluate(held[0], held[1], held[2], held[3], a));
+				}
+				break;
+
+			default:
+				add(totals, offset, HandEvaluator.evaluate(held[0], held[1], held[2], held[3], held[4]));
+			}
+		}
+
+		// Turn F into G one card at a time: after the step for card i, the
+		// totals for a set without card i no longer count hands containing
+		// card i.
+		for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+			for (int subset = 0; subset < NUMBER_OF_DISCARDS; subset++) {
+				if ((subset & (1 << i)) != 0)
+					continue;
+				int offset = subset * STATS_SIZE;
+				int withCard = (subset | (1 << i)) * STATS_SIZE;
+				for (int k = 0; k < STATS_SIZE; k++) {
+					totals[offset + k] -= totals[withCard + k];
+				}
+			}
+		}
+
+		return new DiscardAnalysis(cards.clone(), totals);
+	}
+}
@@ -0,0 +1,26 @@
+package poker;
+
+/*
+ * Decides which cards of a hand to throw away. The decision is a discard
+ * mask where bit i is the card at position i of the hand (highest card
+ * first, see HandOfCards.getCard()), and HandOfCards.discard(int) carries it
+ * out. A strategy should throw away at most DiscardEvaluator.MAX_DISCARDS
+ * cards so that a full table never runs out of cards.
+ *
+ * Strategies may be used by several threads at once, so they should not
+ * keep any state of their own between calls. A strategy which treats the
+ * four suits alike can be turned into a table by StrategyCompiler.
+ */
+public interface DiscardStrategy {
+
+	int getDiscard(HandOfCards hand);
+
+	// The discard with the best expected outcome, see DiscardEvaluator.
+	DiscardStrategy BEST = HandOfCards::getBestDiscard;
+
+	// The hand written rules of HandOfCards.getDiscardProbability().
+	DiscardStrategy HEURISTIC = HandOfCards::getHeuristicDiscard;
+
+	// Keep whatever was dealt.
+	DiscardStrategy STAND_PAT = hand -> 0;
+}
@@ -0,0 +1,187 @@
+package poker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/*
+ * The best discard (at most DiscardEvaluator.MAX_DISCARDS cards) for every
+ * five card hand, worked out once by DiscardEvaluator and stored in a file.
+ * Hands which are the same up to suits have the same best discard, so there
+ * is one entry per hand class (see SuitIsomorphism) rather than per hand, and
+ * a decision is one canonicalize and one lookup.
+ *
+ * File layout (big endian):
+ *   int    MAGIC
+ *   int    number of hand classes (N)
+ *   byte   for each hand class, the cards of its canonical hand to discard.
+ *          Bit i stands for the i-th lowest card of the canonical hand.
+ * The file is about 130KB and is easy to audit: print the canonical hand and
+ * the byte for any class to see what the bot will do with it.
+ *
+ * A table can also be made from any DiscardStrategy by StrategyCompiler,
+ * and a table is itself a DiscardStrategy.
+ */
+public class DiscardTable implements DiscardStrategy {
+
+	public static void main(String[] args) throws IOException {
+		String fileName = args.length > 0 ? args[0]
+				: Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_FILE_NAME).toString();
+
+		long start = System.nanoTime();
+		generate(fileName);
+		System.out.println("Wrote " + fileName + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+		DiscardTable table = load(fileName);
+
+		// The table's discard must be as good as the one DiscardEvaluator
+		// picks for the hand itself, in whatever suits it was dealt.
+		DeckOfCards deck = new DeckOfCards(new SplittableRandom(11)::nextInt);
+		int[] cards = new int[HandOfCards.HAND_SIZE];
+		int[][] hands = new int[100000][];
+		boolean matches = true;
+		for (int i = 0; i < hands.length; i++) {
+			deck.reset();
+			for (int j = 0; j < cards.length; j++) {
+				cards[j] = deck.dealNext().getIndex();
+			}
+			hands[i] = cards.clone();
+			if (i < 10000) {
+				DiscardAnalysis analysis = DiscardEvaluator.evaluate(cards);
+				int best = analysis.getBestDiscard(DiscardEvaluator.MAX_DISCARDS);
+				if (analysis.getExpectedStrength(table.getDiscard(cards)) != analysis.getExpectedStrength(best))
+					matches = false;
+			}
+		}
+		System.out.println("Best discards" + (matches ? " - Success" : " - Failed"));
+
+		// Saving over the file must not disturb a bot which has it mapped,
+		// and a table cut short is refused.
+		table.save(fileName);
+		DiscardTable again = load(fileName);
+		boolean unchanged = true;
+		for (int[] hand : hands) {
+			if (table.getDiscard(hand) != again.getDiscard(hand))
+				unchanged = false;
+		}
+		System.out.println("Save while mapped" + (unchanged ? " - Success" : " - Failed"));
+		Path truncated = Files.createTempFile("discards", ".dat");
+		byte[] whole = toBuffer(new byte[SuitIsomorphism.NUMBER_OF_HAND_CLASSES]).array();
+		Files.write(truncated, Arrays.copyOf(whole, whole.length / 2));
+		boolean refused = false;
+		try {
+			load(truncated.toString());
+		} catch (IOException e) {
+			refused = true;
+		}
+		Files.delete(truncated);
+		System.out.println("Truncated table refused" + (refused ? " - Success" : " - Failed"));
+
+		long elapsed = 0;
+		int checksum = 0;
+		for (int round = 0; round < 5; round++) {
+			start = System.nanoTime();
+			for (int[] hand : hands) {
+				checksum += table.getDiscard(hand);
+			}
+			elapsed = System.nanoTime() - start;
+		}
+		System.out.println("Average time per decision: " + (double) elapsed / hands.length + "ns (" + checksum + ")");
+	}
+
+	public static final String DEFAULT_FILE_NAME = "discards.dat";
+	private static final int MAGIC = 0x504B4454;
+	private static final int HEADER_SIZE = 8;
+
+	private final ByteBuffer discards;
+
+	DiscardTable(ByteBuffer discards) {
+		this.discards = discards;
+	}
+
+	// Map a table previously written by generate().
+	public static DiscardTable load(String fileName) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			long size = channel.size();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC
+					|| buffer.getInt(4) != SuitIsomorphism.NUMBER_OF_HAND_CLASSES)
+				throw new IOException(fileName + " is not a discard table");
+			if (size != HEADER_SIZE + SuitIsomorphism.NUMBER_OF_HAND_CLASSES)
+				throw new IOException(fileName + " is " + size + " bytes, the wrong size for a discard table");
+			return new DiscardTable(buffer);
+		}
+	}
+
+	// Work out the best discard of every hand class (in parallel) and write
+	// the table to the given file.
+	public static void generate(String fileName) throws IOException {
+		byte[] discards = new byte[SuitIsomorphism.NUMBER_OF_HAND_CLASSES];
+		IntStream.range(0, discards.length).parallel().forEach(handClass -> {
+			// toPlayingCards() lists the cards lowest first, which is the
+			// order the discard bits refer to.
+			PlayingCard[] cards = new CardSet(SuitIsomorphism.getClassRepresentative(handClass)).toPlayingCards();
+			discards[handClass] = (byte) DiscardEvaluator.evaluate(cards).getBestDiscard(DiscardEvaluator.MAX_DISCARDS);
+		});
+
+		TableFiles.writeAtomically(toBuffer(discards), fileName);
+	}
+
+	// A table in the file layout, with one discard for each hand class.
+	static ByteBuffer toBuffer(byte[] discards) {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + discards.length);
+		buffer.putInt(MAGIC);
+		buffer.putInt(discards.length);
+		buffer.put(discards);
+		buffer.rewind();
+		return buffer;
+	}
+
+	// Write the table to the given file, to be read back with load().
+	public void save(String fileName) throws IOException {
+		ByteBuffer buffer = discards.duplicate();
+		buffer.rewind();
+		TableFiles.writeAtomically(buffer, fileName);
+	}
+
+	public int getDiscard(HandOfCards hand) {
+		return hand.getDiscard(this);
+	}
+
+	/*
+	 * The discard for five cards given by their deck index, as a mask
+	 * where bit i stands for cards[i].
+	 */
+	public int getDiscard(int[] cards) {
+		return getDiscard(cards, new int[DeckOfCards.NUMBER_OF_SUITS]);
+	}
+
+	// As above, with a caller supplied array of four ints for the suit
+	// permutation so that nothing is allocated.
+	public int getDiscard(int[] cards, int[] permutation) {
+		long hand = 0;
+		for (int card : cards) {
+			hand |= CardSet.bit(card);
+		}
+		long canonical = SuitIsomorphism.canonicalize(hand, permutation);
+		int canonicalDiscard = discards.get(HEADER_SIZE + SuitIsomorphism.getCanonicalHandClass(canonical));
+
+		// Find where each card ended up in the canonical hand.
+		int discardMask = 0;
+		for (int i = 0; i < cards.length; i++) {
+			int canonicalCard = permutation[cards[i] / DeckOfCards.NUMBER_OF_RANKS] * DeckOfCards.NUMBER_OF_RANKS
+					+ cards[i] % DeckOfCards.NUMBER_OF_RANKS;
+			int position = Long.bitCount(canonical & (CardSet.bit(canonicalCard) - 1));
+			if ((canonicalDiscard & (1 << position)) != 0)
+				discardMask |= 1 << i;
+		}
+		return discardMask;
+	}
+}
@@ -0,0 +1,193 @@
+package poker;
+
+/*
+ * Straight and flush draws worked out from rank and suit masks. Everything
+ * about straights depends only on which ranks a hand holds, so it is looked
+ * up in tables indexed by the 13 bit rank mask of the hand (bit 0 is the two,
+ * bit 12 the ace), built once when the class is loaded. Flush draws only need
+ * the number of cards in each suit lane of a CardSet mask.
+ *
+ * A straight is one of ten windows of five ranks: A2345 (the ace plays low),
+ * 23456, ... up to TJQKA. The nearest straight to a hand is the window
+ * holding the most of its ranks (the highest such window on a tie), and
+ * the hand's straight proximity is how many ranks of that window it is
+ * missing: 0 for a straight, 1 for four to a straight and so on.
+ */
+public class DrawTables {
+
+	public static void main(String[] args) {
+		// The one card outs must be exactly the ranks which turn four
+		// different ranks into a straight, checked with HandEvaluator on
+		// cards of mixed suits so no flush gets in the way.
+		boolean outsMatch = true;
+		for (int rankMask = 0; rankMask <= CardSet.RANK_MASK; rankMask++) {
+			if (Integer.bitCount(rankMask) != HandOfCards.HAND_SIZE - 1)
+				continue;
+			int[] cards = new int[HandOfCards.HAND_SIZE];
+			int n = 0;
+			for (int r = 0; r < DeckOfCards.NUMBER_OF_RANKS; r++) {
+				if ((rankMask & (1 << r)) != 0) {
+					cards[n] = n * DeckOfCards.NUMBER_OF_RANKS + r;
+					n++;
+				}
+			}
+			for (int r = 0; r < DeckOfCards.NUMBER_OF_RANKS; r++) {
+				if ((rankMask & (1 << r)) != 0)
+					continue;
+				cards[n] = r;
+				boolean straight = HandCategory.fromGameValue(HandEvaluator.evaluate(cards[0], cards[1], cards[2],
+						cards[3], cards[4])) == HandCategory.STRAIGHT;
+				if (straight != ((getStraightOutRanks(rankMask) & (1 << r)) != 0))
+					outsMatch = false;
+			}
+			if ((getStraightProximity(rankMask) == 1) != (getStraightOutRanks(rankMask) != 0))
+				outsMatch = false;
+		}
+		System.out.println("Straight outs" + (outsMatch ? " - Success" : " - Failed"));
+
+		// A few well known draws (ranks are game value - 2).
+		int openEnded = rankBits(5, 6, 7, 8, 13);
+		int gutshot = rankBits(5, 6, 8, 9, 13);
+		int wheelDraw = rankBits(14, 2, 3, 4, 9);
+		int backdoor = rankBits(7, 8, 9, 2, 13);
+		System.out.println("Open ended" + (isOpenEnded(openEnded) && getStraightOuts(openEnded) == 8
+				&& getStraightBreakRanks(openEnded) == rankBits(13) ? " - Success" : " - Failed"));
+		System.out.println("Gutshot" + (isGutshot(gutshot) && getStraightOuts(gutshot) == 4
+				&& getStraightBreakRanks(gutshot) == rankBits(13) ? " - Success" : " - Failed"));
+		System.out.println("Ace low draw" + (isGutshot(wheelDraw) && getStraightOutRanks(wheelDraw) == rankBits(5)
+				&& getStraightBreakRanks(wheelDraw) == rankBits(9) ? " - Success" : " - Failed"));
+		// 789 is completed by 56, 6T or TJ.
+		System.out.println("Backdoor" + (getStraightProximity(backdoor) == 2
+				&& getBackdoorStraightDraws(backdoor) == 3 ? " - Success" : " - Failed"));
+
+		long fourFlush = CardSet.bit(0) | CardSet.bit(4) | CardSet.bit(7) | CardSet.bit(11) | CardSet.bit(20);
+		System.out.println("Flush draw" + (getFlushDrawSuit(fourFlush) == 0 && getFlushOuts(fourFlush) == 9
+				? " - Success" : " - Failed"));
+	}
+
+	// A rank mask from game values, for the tests above.
+	private static int rankBits(int... gameValues) {
+		int rankMask = 0;
+		for (int gameValue : gameValues) {
+			rankMask |= 1 << (gameValue - PlayingCard.TWO_GAME_VALUE);
+		}
+		return rankMask;
+	}
+
+	// The rank masks of the ten straights, lowest first.
+	private static final int[] STRAIGHTS = new int[10];
+
+	private static final byte[] STRAIGHT_PROXIMITY = new byte[CardSet.RANK_MASK + 1];
+	private static final short[] STRAIGHT_OUT_RANKS = new short[CardSet.RANK_MASK + 1];
+	private static final short[] STRAIGHT_KEEP_RANKS = new short[CardSet.RANK_MASK + 1];
+	private static final byte[] BACKDOOR_STRAIGHT_DRAWS = new byte[CardSet.RANK_MASK + 1];
+
+	static {
+		final int ace = DeckOfCards.NUMBER_OF_RANKS - 1;
+		STRAIGHTS[0] = 1 << ace | 0xF;
+		for (int i = 1; i < STRAIGHTS.length; i++) {
+			STRAIGHTS[i] = 0x1F << (i - 1);
+		}
+
+		for (int rankMask = 0; rankMask <= CardSet.RANK_MASK; rankMask++) {
+			int nearest = 0;
+			for (int i = 1; i < STRAIGHTS.length; i++) {
+				if (Integer.bitCount(rankMask & STRAIGHTS[i]) >= Integer.bitCount(rankMask & STRAIGHTS[nearest]))
+					nearest = i;
+			}
+			STRAIGHT_PROXIMITY[rankMask] = (byte) (HandOfCards.HAND_SIZE
+					- Integer.bitCount(rankMask & STRAIGHTS[nearest]));
+			STRAIGHT_KEEP_RANKS[rankMask] = (short) (rankMask & STRAIGHTS[nearest]);
+
+			int outRanks = 0;
+			int backdoorDraws = 0;
+			for (int a = 0; a < DeckOfCards.NUMBER_OF_RANKS; a++) {
+				if ((rankMask & (1 << a)) != 0)
+					continue;
+				if (containsStraight(rankMask | 1 << a))
+					outRanks |= 1 << a;
+				for (int b = a + 1; b < DeckOfCards.NUMBER_OF_RANKS; b++) {
+					if ((rankMask & (1 << b)) == 0 && !containsStraight(rankMask | 1 << a)
+							&& !containsStraight(rankMask | 1 << b) && containsStraight(rankMask | 1 << a | 1 << b))
+						backdoorDraws++;
+				}
+			}
+			STRAIGHT_OUT_RANKS[rankMask] = (short) outRanks;
+			BACKDOOR_STRAIGHT_DRAWS[rankMask] = (byte) backdoorDraws;
+		}
+	}
+
+	private static boolean containsStraight(int rankMask) {
+		for (int straight : STRAIGHTS) {
+			if ((rankMask & straight) == straight)
+				return true;
+		}
+		return false;
+	}
+
+	// How many ranks the hand is missing from its nearest straight.
+	public static int getStraightProximity(int rankMask) {
+		return STRAIGHT_PROXIMITY[rankMask];
+	}
+
+	// The ranks which complete a straight with one more card.
+	public static int getStraightOutRanks(int rankMask) {
+		return STRAIGHT_OUT_RANKS[rankMask];
+	}
+
+	// The number of unseen cards which complete a straight (four of each out
+	// rank, since the hand holds none of them).
+	public static int getStraightOuts(int rankMask) {
+		return DeckOfCards.NUMBER_OF_SUITS * Integer.bitCount(STRAIGHT_OUT_RANKS[rankMask]);
+	}
+
+	// Open ended (or a double gutshot): two ranks complete the straight.
+	public static boolean isOpenEnded(int rankMask) {
+		return Integer.bitCount(STRAIGHT_OUT_RANKS[rankMask]) == 2;
+	}
+
+	public static boolean isGutshot(int rankMask) {
+		return Integer.bitCount(STRAIGHT_OUT_RANKS[rankMask]) == 1;
+	}
+
+	// The number of pairs of ranks which together, but neither alone,
+	// complete a straight.
+	public static int getBackdoorStraightDraws(int rankMask) {
+		return BACKDOOR_STRAIGHT_DRAWS[rankMask];
+	}
+
+	// The ranks the hand holds in its nearest straight, i.e. the ones to keep
+	// when drawing to it.
+	public static int getStraightKeepRanks(int rankMask) {
+		return STRAIGHT_KEEP_RANKS[rankMask];
+	}
+
+	// The ranks to throw away when drawing to the nearest straight. A hand
+	// holding a pair should also throw away one card of the pair.
+	public static int getStraightBreakRanks(int rankMask) {
+		return rankMask & ~STRAIGHT_KEEP_RANKS[rankMask];
+	}
+
+	// The suit (see PlayingCard.getSuitIndex()) with the most cards. On a tie
+	// it is the suit holding the highest cards, so that the choice does not
+	// depend on how the suits are numbered (and two suits which hold the same
+	// ranks are as good as each other).
+	public static int getFlushDrawSuit(long cards) {
+		int best = 0;
+		int bestKey = 0;
+		for (int suit = 0; suit < DeckOfCards.NUMBER_OF_SUITS; suit++) {
+			int rankMask = CardSet.getRankMask(cards, suit);
+			int key = Integer.bitCount(rankMask) << DeckOfCards.NUMBER_OF_RANKS | rankMask;
+			if (key > bestKey) {
+				best = suit;
+				bestKey = key;
+			}
+		}
+		return best;
+	}
+
+	// The number of cards left in the deck of the flush draw suit.
+	public static int getFlushOuts(long cards) {
+		return DeckOfCards.NUMBER_OF_RANKS - Integer.bitCount(CardSet.getRankMask(cards, getFlushDrawSuit(cards)));
+	}
+}
@@ -0,0 +1,44 @@
+package poker;
+
+/*
+ * How often a hand won, tied and lost over a number of simulated showdowns,
+ * as worked out by EquityEstimator. A tie is any showdown where no opponent
+ * beat the hand but at least one matched it.
+ */
+public class Equity {
+
+	Equity(long wins, long ties, long losses) {
+		this.wins = wins;
+		this.ties = ties;
+		this.losses = losses;
+	}
+
+	public long getTrials() {
+		return wins + ties + losses;
+	}
+
+	public double getWinProbability() {
+		return (double) wins / getTrials();
+	}
+
+	public double getTieProbability() {
+		return (double) ties / getTrials();
+	}
+
+	public double getLossProbability() {
+		return (double) losses / getTrials();
+	}
+
+	// The share of the pot the hand can expect, counting a tie as half.
+	public double getEquity() {
+		return (wins + ties / 2.0) / getTrials();
+	}
+
+	public String toString() {
+		return "Win: " + getWinProbability() + " Tie: " + getTieProbability() + " Loss: " + getLossProbability();
+	}
+
+	private final long wins;
+	private final long ties;
+	private final long losses;
+}
@@ -0,0 +1,178 @@
+package poker;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Estimates how a five card hand does at showdown against a number of
+ * opponents by dealing the opponents random hands from the cards which are
+ * still live (not in the hand and not dead) and counting wins, ties and
+ * losses.
+ *
+ * The trials are split in half over and over into tasks for a ForkJoinPool
+ * until each task is small enough to run on its own. Each task keeps its own
+ * array of live cards and its own SplittableRandom (split off its parent's
+ * before the work is divided), so the workers share nothing while they run.
+ * The counts are added together as the tasks are joined, so no locks are
+ * needed, and the result for a given seed is the same however many threads
+ * the pool has.
+ */
+public class EquityEstimator {
+
+	public static void main(String[] args) {
+		EquityEstimator estimator = new EquityEstimator();
+		int trials = 2000000;
+
+		// A royal flush can never lose.
+		long royalFlush = 0;
+		for (int card = 8; card <= 12; card++) {
+			royalFlush |= CardSet.bit(card);
+		}
+		Equity royal = estimator.estimate(royalFlush, 0, 3, trials, 1);
+		System.out.println("Royal flush never loses"
+				+ (royal.getLossProbability() == 0 && royal.getTrials() == trials ? " - Success" : " - Failed"));
+
+		// The same seed must give exactly the same counts on any pool.
+		long pairOfAces = CardSet.bit(12) | CardSet.bit(25) | CardSet.bit(2) | CardSet.bit(17) | CardSet.bit(34);
+		Equity common = estimator.estimate(pairOfAces, 0, 2, trials, 5);
+		Equity single = new EquityEstimator(new ForkJoinPool(1)).estimate(pairOfAces, 0, 2, trials, 5);
+		System.out.println("Same result on any pool"
+				+ (common.toString().equals(single.toString()) ? " - Success" : " - Failed"));
+
+		// Against one opponent the win probability of a hand is the share of
+		// the other hands it beats, which can be counted exactly.
+		Equity oneOpponent = estimator.estimate(pairOfAces, 0, 1, trials, 6);
+		long beaten = 0;
+		long total = 0;
+		int value = HandEvaluator.evaluate(pairOfAces);
+		for (int c0 = 0; c0 < DeckOfCards.DECK_SIZE; c0++)
+			for (int c1 = c0 + 1; c1 < DeckOfCards.DECK_SIZE; c1++)
+				for (int c2 = c1 + 1; c2 < DeckOfCards.DECK_SIZE; c2++)
+					for (int c3 = c2 + 1; c3 < DeckOfCards.DECK_SIZE; c3++)
+						for (int c4 = c3 + 1; c4 < DeckOfCards.DECK_SIZE; c4++) {
+							long other = CardSet.bit(c0) | CardSet.bit(c1) | CardSet.bit(c2) | CardSet.bit(c3)
+									| CardSet.bit(c4);
+							if ((other & pairOfAces) != 0)
+								continue;
+							total++;
+							if (HandEvaluator.evaluate(other) < value)
+								beaten++;
+						}
+		double exact = (double) beaten / total;
+		System.out.println("Against one opponent: " + oneOpponent.getWinProbability() + " (exact " + exact + ")"
+				+ (Math.abs(oneOpponent.getWinProbability() - exact) < 0.002 ? " - Success" : " - Failed"));
+
+		// Throughput.
+		for (int opponents = 1; opponents <= 5; opponents += 2) {
+			long start = System.nanoTime();
+			Equity equity = estimator.estimate(pairOfAces, 0, opponents, trials, opponents);
+			long elapsed = System.nanoTime() - start;
+			System.out.println(opponents + " opponents: " + equity + " (" + (long) (trials * 1e9 / elapsed)
+					+ " trials/s on " + estimator.pool.getParallelism() + " threads)");
+		}
+	}
+
+	// Number of trials below which a task stops splitting and runs them.
+	private static final int TRIALS_PER_TASK = 1 << 14;
+
+	private final ForkJoinPool pool;
+
+	public EquityEstimator() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public EquityEstimator(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/*
+	 * Play the hand (a CardSet mask of five cards) against the given number
+	 * of opponents in trials random showdowns. The dead cards (a CardSet mask,
+	 * may be 0) are never dealt to an opponent. Using the same seed gives the
+	 * same result.
+	 */
+	public Equity estimate(long hand, long dead, int opponents, int trials, long seed) {
+		long live = CardSet.FULL_DECK & ~hand & ~dead;
+		if (CardSet.size(live) < opponents * HandOfCards.HAND_SIZE)
+			throw new IllegalArgumentException("Not enough live cards for " + opponents + " opponents");
+
+		int[] liveCards = new int[CardSet.size(live)];
+		for (int i = 0; i < liveCards.length; i++) {
+			liveCards[i] = Long.numberOfTrailingZeros(live);
+			live &= live - 1;
+		}
+
+		long[] counts = pool.invoke(new Trials(HandEvaluator.evaluate(hand), liveCards, opponents, trials,
+				new SplittableRandom(seed)));
+		return new Equity(counts[WINS], counts[TIES], counts[LOSSES]);
+	}
+
+	public Equity estimate(HandOfCards hand, long dead, int opponents, int trials, long seed) {
+		return estimate(hand.getCardSet().toLong(), dead, opponents, trials, seed);
+	}
+
+	private static final int WINS = 0;
+	private static final int TIES = 1;
+	private static final int LOSSES = 2;
+
+	private static class Trials extends RecursiveTask<long[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		Trials(int value, int[] liveCards, int opponents, int trials, SplittableRandom random) {
+			this.value = value;
+			this.liveCards = liveCards;
+			this.opponents = opponents;
+			this.trials = trials;
+			this.random = random;
+		}
+
+		protected long[] compute() {
+			if (trials > TRIALS_PER_TASK) {
+				Trials left = new Trials(value, liveCards, opponents, trials / 2, random.split());
+				Trials right = new Trials(value, liveCards, opponents, trials - trials / 2, random);
+				left.fork();
+				long[] counts = right.compute();
+				long[] leftCounts = left.join();
+				for (int i = 0; i < counts.length; i++) {
+					counts[i] += leftCounts[i];
+				}
+				return counts;
+			}
+
+			// Deal each opponent five cards with a partial shuffle of this
+			// task's own copy of the live cards.
+			int[] cards = liveCards.clone();
+			long[] counts = new long[3];
+			for (int t = 0; t < trials; t++) {
+				int best = 0;
+				int next = 0;
+				for (int o = 0; o < opponents; o++) {
+					for (int i = 0; i < HandOfCards.HAND_SIZE; i++, next++) {
+						int j = next + random.nextInt(cards.length - next);
+						int swap = cards[next];
+						cards[next] = cards[j];
+						cards[j] = swap;
+					}
+					best = Math.max(best, HandEvaluator.evaluate(cards[next - 5], cards[next - 4], cards[next - 3],
+							cards[next - 2], cards[next - 1]));
+				}
+
+				if (best < value)
+					counts[WINS]++;
+				else if (best == value)
+					counts[TIES]++;
+				else
+					counts[LOSSES]++;
+			}
+			return counts;
+		}
+
+		private final int value;
+		private final int[] liveCards;
+		private final int opponents;
+		private final int trials;
+		private final SplittableRandom random;
+	}
+}
@@ -0,0 +1,72 @@
+package poker;
+
+/*
+ * Where the game reports its rounds, deals, shuffles, evaluations and
+ * discards for profiling. Each begin method is called just before the work
+ * and returns the event being timed, or null if nothing is being recorded,
+ * and the matching end method is given it back just after, along with what
+ * was dealt or decided.
+ *
+ * This class does nothing. HOOK is the hook in use: GameEvents (in src-jfr),
+ * which emits JDK Flight Recorder events, if it was built and jdk.jfr is
+ * there to run it, and otherwise an instance of this class. The game itself
+ * never refers to jdk.jfr, so it builds and runs on any Java 8. HOOK is a
+ * static final, so the JIT compiler inlines whichever hook it is and the
+ * one here costs nothing at all.
+ */
+public class GameEventHook {
+
+	public static final GameEventHook HOOK = install();
+
+	private static GameEventHook install() {
+		try {
+			return (GameEventHook) Class.forName("poker.GameEvents").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+			// Not built, no jdk.jfr, or Flight Recorder turned off.
+			return new GameEventHook();
+		}
+	}
+
+	GameEventHook() {
+	}
+
+	// A round played by PokerPlayer: reset, deal and discard.
+	Object beginRound() {
+		return null;
+	}
+
+	void endRound(Object event, HandCategory dealt, int discardMask, HandCategory category, int value) {
+	}
+
+	// Five cards dealt into a hand.
+	Object beginDeal() {
+		return null;
+	}
+
+	void endDeal(Object event, HandCategory category) {
+	}
+
+	// The undealt cards of a deck shuffled.
+	Object beginShuffle() {
+		return null;
+	}
+
+	void endShuffle(Object event, int cardsDealt) {
+	}
+
+	// A hand given its game value.
+	Object beginEvaluation() {
+		return null;
+	}
+
+	void endEvaluation(Object event, HandCategory category, int value) {
+	}
+
+	// A player's discard, decided and made.
+	Object beginDiscard() {
+		return null;
+	}
+
+	void endDiscard(Object event, HandCategory dealt, int discardMask, HandCategory category) {
+	}
+}
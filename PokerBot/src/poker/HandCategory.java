@@ -0,0 +1,17 @@
+package poker;
+
+/*
+ * The type of a five card hand, from worst to best. The order matches the
+ * tiers used for hand values in HandOfCards, so the category of any game value
+ * is simply the tier the value falls in.
+ */
+public enum HandCategory {
+	HIGH_HAND, ONE_PAIR, TWO_PAIR, THREE_OF_A_KIND, STRAIGHT, FLUSH, FULL_HOUSE, FOUR_OF_A_KIND, STRAIGHT_FLUSH, ROYAL_FLUSH;
+
+	// values() returns a new array on every call so keep one copy around.
+	private static final HandCategory[] CATEGORIES = values();
+
+	public static HandCategory fromGameValue(int gameValue) {
+		return CATEGORIES[gameValue / HandOfCards.TIER_INTERVAL];
+	}
+}
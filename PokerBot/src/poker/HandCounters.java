@@ -0,0 +1,114 @@
+package poker;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Counts of what happens to decks and hands, for Metrics. Every hand that
+ * discards is counted once under its dealt category, its final category
+ * and the number of cards it threw away together (see getDiscardKey()), so
+ * one count records all three and the separate distributions are added up
+ * when they are read.
+ *
+ * Decks and hands count in plain fields of their own and add them here in
+ * batches, so the counts lag behind by up to Metrics.SAMPLE_RATE calls of
+ * each deck and hand.
+ */
+public class HandCounters implements HandCountersMBean {
+
+	public HandCounters() {
+		for (int i = 0; i < hands.length; i++) {
+			hands[i] = new LongAdder();
+		}
+	}
+
+	// A deck was reset the given number of times, after dealing the given
+	// number of cards in all.
+	public void addResets(long resets, long cardsDealt) {
+		this.resets.add(resets);
+		this.cardsDealt.add(cardsDealt);
+	}
+
+	// Where a hand which discards is counted in an array of NUMBER_OF_KEYS
+	// counts.
+	public static int getDiscardKey(HandCategory dealt, HandCategory ended, int discards) {
+		return (dealt.ordinal() * CATEGORIES + ended.ordinal()) * DISCARDS + discards;
+	}
+
+	// Add counts of hands which discarded, indexed by getDiscardKey(), and
+	// set them back to 0.
+	public void addDiscards(int[] counts) {
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0) {
+				hands[i].add(counts[i]);
+				counts[i] = 0;
+			}
+		}
+	}
+
+	public long getResets() {
+		return resets.sum();
+	}
+
+	public long getCardsDealt() {
+		return cardsDealt.sum();
+	}
+
+	public long getHandsDiscarded() {
+		long count = 0;
+		for (LongAdder hand : hands) {
+			count += hand.sum();
+		}
+		return count;
+	}
+
+	public long[] getDealtCategoryCounts() {
+		long[] counts = new long[CATEGORIES];
+		for (int i = 0; i < hands.length; i++) {
+			counts[i / DISCARDS / CATEGORIES] += hands[i].sum();
+		}
+		return counts;
+	}
+
+	public long[] getFinalCategoryCounts() {
+		long[] counts = new long[CATEGORIES];
+		for (int i = 0; i < hands.length; i++) {
+			counts[i / DISCARDS % CATEGORIES] += hands[i].sum();
+		}
+		return counts;
+	}
+
+	public long[] getDiscardCounts() {
+		long[] counts = new long[DISCARDS];
+		for (int i = 0; i < hands.length; i++) {
+			counts[i % DISCARDS] += hands[i].sum();
+		}
+		return counts;
+	}
+
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append("Resets: ").append(getResets()).append(", cards dealt: ").append(getCardsDealt())
+				.append(", hands discarded: ").append(getHandsDiscarded()).append('\n');
+		long[] dealt = getDealtCategoryCounts();
+		long[] ended = getFinalCategoryCounts();
+		report.append("Category\tDealt\tFinal\n");
+		for (HandCategory category : HandCategory.values()) {
+			report.append(category).append('\t').append(dealt[category.ordinal()]).append('\t')
+					.append(ended[category.ordinal()]).append('\n');
+		}
+		long[] discards = getDiscardCounts();
+		report.append("Discards\tHands\n");
+		for (int i = 0; i < DISCARDS; i++) {
+			report.append(i).append('\t').append(discards[i]).append('\n');
+		}
+		return report.toString();
+	}
+
+	private static final int CATEGORIES = HandCategory.values().length;
+	private static final int DISCARDS = HandOfCards.HAND_SIZE + 1;
+	public static final int NUMBER_OF_KEYS = CATEGORIES * CATEGORIES * DISCARDS;
+
+	private final LongAdder resets = new LongAdder();
+	private final LongAdder cardsDealt = new LongAdder();
+	private final LongAdder[] hands = new LongAdder[NUMBER_OF_KEYS];
+}
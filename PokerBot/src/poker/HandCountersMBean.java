@@ -0,0 +1,18 @@
+package poker;
+
+// The JMX view of HandCounters. Category counts are indexed by
+// HandCategory.ordinal(), discard counts by the number of cards discarded.
+public interface HandCountersMBean {
+
+	long getResets();
+
+	long getCardsDealt();
+
+	long getHandsDiscarded();
+
+	long[] getDealtCategoryCounts();
+
+	long[] getFinalCategoryCounts();
+
+	long[] getDiscardCounts();
+}
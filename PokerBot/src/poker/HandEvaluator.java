@@ -0,0 +1,310 @@
+package poker;
+
+import java.util.Arrays;
+
+/*
+ * Scores five card hands using lookup tables which are built once when the
+ * class is loaded. A hand is scored with a handful of array reads instead of
+ * running through the isHighHand(), isOnePair(), ... predicate chain.
+ *
+ * The value returned uses the same tiers as HandOfCards (HIGH_CARD_DEFAULT,
+ * ONE_PAIR_DEFAULT, ...) so hands from different tiers compare exactly as they
+ * always have. Within a tier the value is the tier default plus the ranks that
+ * matter for that tier (pair first, then kickers and so on) written as a base
+ * 13 number. The largest such number is 13^5 - 1 = 371,292 which fits well
+ * inside the 1,000,000 gap between tiers.
+ *
+ * Cards are identified by PlayingCard.getIndex() or held in a CardSet mask.
+ */
+public class HandEvaluator {
+
+	// Every set of five different ranks that forms a straight, lowest first.
+	// The ace low straight (5, 4, 3, 2, A) is the first entry.
+	private static final int[] STRAIGHTS = { 0x100F, 0x001F, 0x003E, 0x007C, 0x00F8, 0x01F0, 0x03E0, 0x07C0, 0x0F80,
+			0x1F00 };
+
+	// Flushes are looked up by the 13 bit mask of the ranks in the hand.
+	private static final int[] FLUSH_VALUES = new int[1 << DeckOfCards.NUMBER_OF_RANKS];
+
+	/*
+	 * Every other hand is looked up by a key which counts how many cards of
+	 * each rank the hand holds (the count of rank r is digit r of the key in
+	 * base 5). The 6,175 possible keys are stored in a perfect hash table, so
+	 * a lookup never has to probe.
+	 */
+	private static final PerfectHashTable RANK_VALUES;
+
+	// Per card lookups so evaluate() never has to divide.
+	private static final int[] RANK_BITS = new int[DeckOfCards.DECK_SIZE];
+	static final int[] RANK_KEYS = new int[DeckOfCards.DECK_SIZE];
+	private static final int[] SUIT_BITS = new int[DeckOfCards.DECK_SIZE];
+
+	// The rank count key of every possible set of ranks in a single suit.
+	static final int[] SUIT_RANK_KEYS = new int[1 << DeckOfCards.NUMBER_OF_RANKS];
+
+	static {
+		int[] powersOfFive = new int[DeckOfCards.NUMBER_OF_RANKS];
+		powersOfFive[0] = 1;
+		for (int i = 1; i < DeckOfCards.NUMBER_OF_RANKS; i++) {
+			powersOfFive[i] = powersOfFive[i - 1] * 5;
+		}
+
+		for (int card = 0; card < DeckOfCards.DECK_SIZE; card++) {
+			RANK_BITS[card] = 1 << (card % DeckOfCards.NUMBER_OF_RANKS);
+			RANK_KEYS[card] = powersOfFive[card % DeckOfCards.NUMBER_OF_RANKS];
+			SUIT_BITS[card] = 1 << (card / DeckOfCards.NUMBER_OF_RANKS);
+		}
+
+		for (int rankMask = 0; rankMask < SUIT_RANK_KEYS.length; rankMask++) {
+			for (int r = 0; r < DeckOfCards.NUMBER_OF_RANKS; r++) {
+				if ((rankMask & (1 << r)) != 0)
+					SUIT_RANK_KEYS[rankMask] += powersOfFive[r];
+			}
+		}
+
+		// Walk every multiset of five ranks (no rank more than four times) and
+		// score it once.
+		int[] keys = new int[1 << DeckOfCards.NUMBER_OF_RANKS];
+		int[] values = new int[keys.length];
+		int numberOfKeys = 0;
+		int[] counts = new int[DeckOfCards.NUMBER_OF_RANKS];
+		for (int r0 = 0; r0 < DeckOfCards.NUMBER_OF_RANKS; r0++) {
+			for (int r1 = r0; r1 < DeckOfCards.NUMBER_OF_RANKS; r1++) {
+				for (int r2 = r1; r2 < DeckOfCards.NUMBER_OF_RANKS; r2++) {
+					for (int r3 = r2; r3 < DeckOfCards.NUMBER_OF_RANKS; r3++) {
+						for (int r4 = r3; r4 < DeckOfCards.NUMBER_OF_RANKS; r4++) {
+							if (r0 == r4)
+								continue;
+
+							Arrays.fill(counts, 0);
+							counts[r0]++;
+							counts[r1]++;
+							counts[r2]++;
+							counts[r3]++;
+							counts[r4]++;
+
+							int key = 0;
+							for (int r = 0; r < DeckOfCards.NUMBER_OF_RANKS; r++) {
+								key += counts[r] * powersOfFive[r];
+							}
+
+							int rankBits = (1 << r0) | (1 << r1) | (1 << r2) | (1 << r3) | (1 << r4);
+							keys[numberOfKeys] = key;
+							if (Integer.bitCount(rankBits) == 5)
+								values[numberOfKeys++] = scoreUniqueRanks(rankBits);
+							else
+								values[numberOfKeys++] = scorePairedRanks(counts);
+						}
+					}
+				}
+			}
+		}
+
+		RANK_VALUES = new PerfectHashTable(Arrays.copyOf(keys, numberOfKeys), Arrays.copyOf(values, numberOfKeys));
+	}
+
+	// Fill in the flush value of a hand with five different ranks and return
+	// its value when it is not a flush.
+	private static int scoreUniqueRanks(int rankBits) {
+		int straightHigh = -1;
+		for (int i = 0; i < STRAIGHTS.length; i++) {
+			if (STRAIGHTS[i] == rankBits) {
+				// The ace low straight is five high (rank 3).
+				straightHigh = i + 3;
+			}
+		}
+
+		if (straightHigh >= 0) {
+			if (straightHigh == DeckOfCards.NUMBER_OF_RANKS - 1)
+				FLUSH_VALUES[rankBits] = HandOfCards.ROYAL_FLUSH_DEFAULT + straightHigh;
+			else
+				FLUSH_VALUES[rankBits] = HandOfCards.STRAIGHT_FLUSH_DEFAULT + straightHigh;
+			return HandOfCards.STRAIGHT_DEFAULT + straightHigh;
+		}
+
+		// Highest card first, then the next highest and so on.
+		int kickers = 0;
+		for (int r = DeckOfCards.NUMBER_OF_RANKS - 1; r >= 0; r--) {
+			if ((rankBits & (1 << r)) != 0)
+				kickers = kickers * DeckOfCards.NUMBER_OF_RANKS + r;
+		}
+		FLUSH_VALUES[rankBits] = HandOfCards.FLUSH_DEFAULT + kickers;
+		return HandOfCards.HIGH_CARD_DEFAULT + kickers;
+	}
+
+	/*
+	 * Score a hand with at least one repeated rank. The ranks are weighted by
+	 * how many times they appear first and by their rank second, so a full
+	 * house weights the three of a kind over the pair, two pair weights the
+	 * higher pair, then the lower pair, then the kicker and so on.
+	 */
+	private static int scorePairedRanks(int[] counts) {
+		int kickers = 0;
+		for (int count = 4; count >= 1; count--) {
+			for (int r = DeckOfCards.NUMBER_OF_RANKS - 1; r >= 0; r--) {
+				if (counts[r] == count)
+					kickers = kickers * DeckOfCards.NUMBER_OF_RANKS + r;
+			}
+		}
+
+		int pairs = 0, trips = 0, quads = 0;
+		for (int r = 0; r < DeckOfCards.NUMBER_OF_RANKS; r++) {
+			if (counts[r] == 2)
+				pairs++;
+			else if (counts[r] == 3)
+				trips++;
+			else if (counts[r] == 4)
+				quads++;
+		}
+
+		if (quads == 1)
+			return HandOfCards.FOUR_OF_A_KIND_DEFAULT + kickers;
+		if (trips == 1 && pairs == 1)
+			return HandOfCards.FULL_HOUSE_DEFAULT + kickers;
+		if (trips == 1)
+			return HandOfCards.THREE_OF_A_KIND_DEFAULT + kickers;
+		if (pairs == 2)
+			return HandOfCards.TWO_PAIR_DEFAULT + kickers;
+		return HandOfCards.ONE_PAIR_DEFAULT + kickers;
+	}
+
+	// Score a hand given the deck index of each of its five cards. The cards
+	// can be in any order.
+	public static int evaluate(int c0, int c1, int c2, int c3, int c4) {
+		if ((SUIT_BITS[c0] & SUIT_BITS[c1] & SUIT_BITS[c2] & SUIT_BITS[c3] & SUIT_BITS[c4]) != 0)
+			return FLUSH_VALUES[RANK_BITS[c0] | RANK_BITS[c1] | RANK_BITS[c2] | RANK_BITS[c3] | RANK_BITS[c4]];
+
+		return RANK_VALUES.get(RANK_KEYS[c0] + RANK_KEYS[c1] + RANK_KEYS[c2] + RANK_KEYS[c3] + RANK_KEYS[c4]);
+	}
+
+	public static int evaluate(PlayingCard c0, PlayingCard c1, PlayingCard c2, PlayingCard c3, PlayingCard c4) {
+		return evaluate(c0.getIndex(), c1.getIndex(), c2.getIndex(), c3.getIndex(), c4.getIndex());
+	}
+
+	/*
+	 * Score a hand held as a CardSet mask of exactly five cards. Each 13 bit
+	 * suit lane of the mask is already the rank mask of that suit, so the rank
+	 * count key is the sum of one table read per suit, and the hand is a flush
+	 * when one lane holds all five cards.
+	 */
+	public static int evaluate(long cards) {
+		int hearts = CardSet.getRankMask(cards, 0);
+		int diamonds = CardSet.getRankMask(cards, 1);
+		int clubs = CardSet.getRankMask(cards, 2);
+		int spades = CardSet.getRankMask(cards, 3);
+
+		int value = RANK_VALUES.get(
+				SUIT_RANK_KEYS[hearts] + SUIT_RANK_KEYS[diamonds] + SUIT_RANK_KEYS[clubs] + SUIT_RANK_KEYS[spades]);
+		int flushValue = FLUSH_VALUES[hearts | diamonds | clubs | spades];
+		boolean flush = Integer.bitCount(hearts) == 5 | Integer.bitCount(diamonds) == 5
+				| Integer.bitCount(clubs) == 5 | Integer.bitCount(spades) == 5;
+		return flush ? flushValue : value;
+	}
+
+	/*
+	 * Score many hands in one call, without creating any objects. hands holds
+	 * one CardSet mask per hand and the value of hands[i] is written to
+	 * values[i] for the first count hands. The loop body has no branches
+	 * (evaluate(long) reads both possible answers and picks one) so it runs
+	 * at a steady rate whatever mix of hands it is given.
+	 */
+	public static void evaluate(long[] hands, int[] values, int count) {
+		for (int i = 0; i < count; i++) {
+			values[i] = evaluate(hands[i]);
+		}
+	}
+
+	// Pack five card indices into one int, six bits per card.
+	public static int encode(int c0, int c1, int c2, int c3, int c4) {
+		return c0 | c1 << 6 | c2 << 12 | c3 << 18 | c4 << 24;
+	}
+
+	/*
+	 * Score many hands packed with encode(). The value of hands[i] is written
+	 * to values[i] for the first count hands.
+	 */
+	public static void evaluate(int[] hands, int[] values, int count) {
+		for (int i = 0; i < count; i++) {
+			int hand = hands[i];
+			int c0 = hand & 0x3F;
+			int c1 = hand >>> 6 & 0x3F;
+			int c2 = hand >>> 12 & 0x3F;
+			int c3 = hand >>> 18 & 0x3F;
+			int c4 = hand >>> 24 & 0x3F;
+
+			int value = RANK_VALUES.get(RANK_KEYS[c0] + RANK_KEYS[c1] + RANK_KEYS[c2] + RANK_KEYS[c3] + RANK_KEYS[c4]);
+			int flushValue = FLUSH_VALUES[RANK_BITS[c0] | RANK_BITS[c1] | RANK_BITS[c2] | RANK_BITS[c3] | RANK_BITS[c4]];
+			boolean flush = (SUIT_BITS[c0] & SUIT_BITS[c1] & SUIT_BITS[c2] & SUIT_BITS[c3] & SUIT_BITS[c4]) != 0;
+			values[i] = flush ? flushValue : value;
+		}
+	}
+
+	public static void main(String[] args) {
+		// Score every possible hand and count how many land in each tier. The
+		// expected counts are the well known five card poker frequencies.
+		final String[] names = { "High card", "One pair", "Two pair", "Three of a kind", "Straight", "Flush",
+				"Full house", "Four of a kind", "Straight flush", "Royal flush" };
+		final int[] expected = { 1302540, 1098240, 123552, 54912, 10200, 5108, 3744, 624, 36, 4 };
+		int[] counts = new int[names.length];
+
+		for (int c0 = 0; c0 < DeckOfCards.DECK_SIZE; c0++)
+			for (int c1 = c0 + 1; c1 < DeckOfCards.DECK_SIZE; c1++)
+				for (int c2 = c1 + 1; c2 < DeckOfCards.DECK_SIZE; c2++)
+					for (int c3 = c2 + 1; c3 < DeckOfCards.DECK_SIZE; c3++)
+						for (int c4 = c3 + 1; c4 < DeckOfCards.DECK_SIZE; c4++)
+							counts[HandCategory.fromGameValue(evaluate(c0, c1, c2, c3, c4)).ordinal()]++;
+
+		// The CardSet version must agree with the card index version.
+		boolean sameValues = true;
+		for (int c0 = 0; c0 < DeckOfCards.DECK_SIZE; c0++)
+			for (int c1 = c0 + 1; c1 < DeckOfCards.DECK_SIZE; c1++)
+				for (int c2 = c1 + 1; c2 < DeckOfCards.DECK_SIZE; c2++)
+					for (int c3 = c2 + 1; c3 < DeckOfCards.DECK_SIZE; c3++)
+						for (int c4 = c3 + 1; c4 < DeckOfCards.DECK_SIZE; c4++) {
+							long cards = CardSet.bit(c0) | CardSet.bit(c1) | CardSet.bit(c2) | CardSet.bit(c3)
+									| CardSet.bit(c4);
+							if (evaluate(cards) != evaluate(c0, c1, c2, c3, c4))
+								sameValues = false;
+						}
+		System.out.println("CardSet evaluation" + (sameValues ? " - Success" : " - Failed"));
+
+		// The batch versions must agree with scoring one hand at a time.
+		long[] masks = new long[HandRankTable.NUMBER_OF_HANDS];
+		int[] packed = new int[HandRankTable.NUMBER_OF_HANDS];
+		int[] single = new int[HandRankTable.NUMBER_OF_HANDS];
+		int n = 0;
+		for (int c0 = 0; c0 < DeckOfCards.DECK_SIZE; c0++)
+			for (int c1 = c0 + 1; c1 < DeckOfCards.DECK_SIZE; c1++)
+				for (int c2 = c1 + 1; c2 < DeckOfCards.DECK_SIZE; c2++)
+					for (int c3 = c2 + 1; c3 < DeckOfCards.DECK_SIZE; c3++)
+						for (int c4 = c3 + 1; c4 < DeckOfCards.DECK_SIZE; c4++) {
+							masks[n] = CardSet.bit(c0) | CardSet.bit(c1) | CardSet.bit(c2) | CardSet.bit(c3)
+									| CardSet.bit(c4);
+							packed[n] = encode(c4, c2, c0, c3, c1);
+							single[n++] = evaluate(c0, c1, c2, c3, c4);
+						}
+
+		int[] batch = new int[n];
+		long maskTime = Long.MAX_VALUE;
+		long packedTime = Long.MAX_VALUE;
+		boolean batchMatches = true;
+		for (int round = 0; round < 10; round++) {
+			long start = System.nanoTime();
+			evaluate(masks, batch, n);
+			maskTime = Math.min(maskTime, System.nanoTime() - start);
+			batchMatches &= Arrays.equals(batch, single);
+
+			start = System.nanoTime();
+			evaluate(packed, batch, n);
+			packedTime = Math.min(packedTime, System.nanoTime() - start);
+			batchMatches &= Arrays.equals(batch, single);
+		}
+		System.out.println("Batch evaluation" + (batchMatches ? " - Success" : " - Failed"));
+		System.out.println("Batch time per hand: " + (double) maskTime / n + "ns (CardSet), " + (double) packedTime / n
+				+ "ns (packed)");
+
+		for (int i = 0; i < names.length; i++) {
+			System.out.println(names[i] + ": " + counts[i] + (counts[i] == expected[i] ? " - Success" : " - Failed"));
+		}
+	}
+}
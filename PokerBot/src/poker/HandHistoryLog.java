@@ -0,0 +1,369 @@
+package poker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * A record of every hand played, written as fixed size binary records to
+ * memory mapped files. Writing a record is three stores into the mapped
+ * memory, with no system call and no allocation, so the game thread never
+ * waits on the disk; the operating system writes the pages out in the
+ * background.
+ *
+ * The log is a directory of segments named hands-00000000.log,
+ * hands-00000001.log, ... Each segment is a 16 byte header followed by
+ * records. A background thread creates and maps the next segment while the
+ * current one fills up, and another forces each full segment to disk.
+ *
+ * Segment header (big endian):
+ *   int    MAGIC
+ *   int    RECORD_SIZE
+ *   long   segment number
+ *
+ * Record (16 bytes, big endian):
+ *   0-4    the five cards dealt (card indices, lowest index first)
+ *   5      bits 0-4, the discard mask: bit i set if the i-th card above was
+ *          thrown away. Bits 5-6, the outcome of the round (OUTCOME_UNKNOWN,
+ *          OUTCOME_LOST, OUTCOME_WON or OUTCOME_TIED).
+ *   6-10   the replacement cards (lowest index first), NO_CARD if unused
+ *   11     strategy (the seat, for a PokerTable)
+ *   12-15  the value of the final hand (getGameValue())
+ *
+ * Every hand value is more than 0 and the value is written last, so a
+ * record whose value is 0 was never finished. The log ends at the first
+ * such record: after a crash the unfinished record at the tail is ignored,
+ * and opening the log again carries on writing over it.
+ *
+ * A log must only be written by one thread.
+ */
+public class HandHistoryLog implements Closeable {
+
+	public static void main(String[] args) throws IOException {
+		Path directory = Files.createTempDirectory("hands");
+
+		// Small segments so the test rolls over many of them.
+		PokerTable table = new PokerTable(4, 19L);
+		HandHistoryLog log = new HandHistoryLog(directory.toString(), 1000);
+		table.setHandHistoryLog(log);
+		for (int i = 0; i < 10000; i++) {
+			table.playRound();
+		}
+		log.close();
+		System.out.println("Wrote " + log.getRecordsWritten() + " records in " + countSegments(directory)
+				+ " segments");
+		System.out.println("Records read back" + (checkRecords(directory) == 40000 ? " - Success" : " - Failed"));
+
+		// Opening the log again carries on from the end.
+		log = new HandHistoryLog(directory.toString(), 1000);
+		table.setHandHistoryLog(log);
+		for (int i = 0; i < 100; i++) {
+			table.playRound();
+		}
+		log.close();
+		System.out.println("Reopened log" + (checkRecords(directory) == 40400 ? " - Success" : " - Failed"));
+
+		// A record torn by a crash (everything but the value written) is not
+		// read, and is written over when the log is opened again.
+		Path last = segmentPath(directory, countSegments(directory) - 1);
+		try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			int tail = findTail(buffer);
+			buffer.putLong(tail, -1L);
+			buffer.putInt(tail + 8, -1);
+			buffer.force();
+		}
+		boolean tornSkipped = checkRecords(directory) == 40400;
+		log = new HandHistoryLog(directory.toString(), 1000);
+		table.setHandHistoryLog(log);
+		table.playRound();
+		log.close();
+		System.out.println("Torn record" + (tornSkipped && checkRecords(directory) == 40404 ? " - Success"
+				: " - Failed"));
+		deleteLog(directory);
+
+		// Throughput with full size segments.
+		log = new HandHistoryLog(directory.toString());
+		final int records = 5000000;
+		long initial = CardSet.bit(0) | CardSet.bit(14) | CardSet.bit(28) | CardSet.bit(42) | CardSet.bit(51);
+		long end = initial & ~CardSet.bit(0) | CardSet.bit(12);
+		int value = HandEvaluator.evaluate(end);
+		long start = System.nanoTime();
+		for (int i = 0; i < records; i++) {
+			log.append(initial, end, i & 3, value);
+		}
+		long elapsed = System.nanoTime() - start;
+		log.close();
+		System.out.println((long) (records * 1e9 / elapsed) + " records per second ("
+				+ (checkRecords(directory) == records ? "Success" : "Failed") + ")");
+		deleteLog(directory);
+		Files.delete(directory);
+	}
+
+	// Read back every record in the log, checking that its cards make up the
+	// value it holds, and return how many there are (-1 if any are wrong).
+	private static int checkRecords(Path directory) throws IOException {
+		int count = 0;
+		for (int segment = 0; segment < countSegments(directory); segment++) {
+			try (FileChannel channel = FileChannel.open(segmentPath(directory, segment), StandardOpenOption.READ)) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				for (int p = RECORD_SIZE; p < buffer.capacity() && buffer.getInt(p + FINAL_VALUE) != 0;
+						p += RECORD_SIZE) {
+					long cards = 0;
+					int discardMask = buffer.get(p + DISCARD_MASK) & DISCARD_BITS;
+					for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+						if ((discardMask & (1 << i)) == 0)
+							cards |= CardSet.bit(buffer.get(p + INITIAL_CARDS + i));
+						int replacement = buffer.get(p + REPLACEMENT_CARDS + i) & 0xFF;
+						if (replacement != NO_CARD)
+							cards |= CardSet.bit(replacement);
+					}
+					if (CardSet.size(cards) != HandOfCards.HAND_SIZE
+							|| HandEvaluator.evaluate(cards) != buffer.getInt(p + FINAL_VALUE))
+						return -1;
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static int countSegments(Path directory) throws IOException {
+		return lastSegment(directory) + 1;
+	}
+
+	private static void deleteLog(Path directory) throws IOException {
+		for (File file : directory.toFile().listFiles()) {
+			Files.delete(file.toPath());
+		}
+	}
+
+	public static final int RECORD_SIZE = 16;
+	public static final int NO_CARD = 0xFF;
+
+	// How the hand did against the others in its round. A hand which tied
+	// for the best hand is OUTCOME_TIED rather than OUTCOME_WON.
+	public static final int OUTCOME_UNKNOWN = 0;
+	public static final int OUTCOME_LOST = 1;
+	public static final int OUTCOME_WON = 2;
+	public static final int OUTCOME_TIED = 3;
+
+	// Where each field starts in a record.
+	static final int INITIAL_CARDS = 0;
+	static final int DISCARD_MASK = 5;
+	static final int REPLACEMENT_CARDS = 6;
+	static final int STRATEGY = 11;
+	static final int FINAL_VALUE = 12;
+
+	// The parts of the discard mask byte.
+	static final int DISCARD_BITS = 0x1F;
+	static final int OUTCOME_SHIFT = 5;
+
+	static final int MAGIC = 0x504B484C;
+
+	// 4M records, 64MB.
+	private static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 22;
+
+	private final Path directory;
+	private final long segmentSize;
+	private final ExecutorService mapper;
+	private final ExecutorService flusher;
+	private MappedByteBuffer buffer;
+	private int position;
+	private int segmentNumber;
+	private Future<MappedByteBuffer> nextSegment;
+	private long recordsWritten;
+
+	public HandHistoryLog(String directory) throws IOException {
+		this(directory, DEFAULT_RECORDS_PER_SEGMENT);
+	}
+
+	/*
+	 * Open the log in the given directory, creating it if needed. New
+	 * segments hold recordsPerSegment records; segments already in the
+	 * directory keep their size.
+	 */
+	public HandHistoryLog(String directory, int recordsPerSegment) throws IOException {
+		this.directory = Paths.get(directory);
+		segmentSize = (long) (recordsPerSegment + 1) * RECORD_SIZE;
+		if (recordsPerSegment < 1 || segmentSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Cannot have " + recordsPerSegment + " records in a segment");
+		Files.createDirectories(this.directory);
+
+		// Carry on after the last finished record of the last segment.
+		segmentNumber = Math.max(0, lastSegment(this.directory));
+		buffer = map(segmentNumber);
+		position = findTail(buffer);
+
+		// Full segments are forced on a thread of their own, so a slow disk
+		// never holds up mapping the next segment.
+		mapper = newDaemonExecutor("HandHistoryLog mapper");
+		flusher = newDaemonExecutor("HandHistoryLog flusher");
+		mapNext();
+	}
+
+	// Log a hand which was not played against anyone.
+	public void append(long initialCards, long finalCards, int strategy, int value) {
+		append(initialCards, finalCards, strategy, value, OUTCOME_UNKNOWN);
+	}
+
+	/*
+	 * Log a hand. initialCards and finalCards are CardSet masks of the hand
+	 * as it was dealt and after the discard (see HandOfCards.getCardMask()),
+	 * strategy is any number from 0 to 255, value is the final hand's
+	 * getGameValue() and outcome is one of the OUTCOME constants.
+	 */
+	public void append(long initialCards, long finalCards, int strategy, int value, int outcome) {
+		if (position == buffer.capacity())
+			roll();
+
+		// The record is put together as a long and an int holding bytes 0-7
+		// and 8-11, then the value.
+		long first = 0;
+		int discardMask = 0;
+		long cards = initialCards;
+		for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+			int card = Long.numberOfTrailingZeros(cards);
+			cards &= cards - 1;
+			first = first << 8 | card;
+			if ((finalCards & CardSet.bit(card)) == 0)
+				discardMask |= 1 << i;
+		}
+		first = first << 8 | outcome << OUTCOME_SHIFT | discardMask;
+
+		long replacements = finalCards & ~initialCards;
+		int second = 0;
+		for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+			int card = replacements == 0 ? NO_CARD : Long.numberOfTrailingZeros(replacements);
+			replacements &= replacements - 1;
+			if (i < 2)
+				first = first << 8 | card;
+			else
+				second = second << 8 | card;
+		}
+		second = second << 8 | strategy & 0xFF;
+
+		buffer.putLong(position, first);
+		buffer.putInt(position + 8, second);
+		buffer.putInt(position + FINAL_VALUE, value);
+		position += RECORD_SIZE;
+		recordsWritten++;
+	}
+
+	// The number of records written since the log was opened.
+	public long getRecordsWritten() {
+		return recordsWritten;
+	}
+
+	// Write everything logged so far to disk. This waits for the disk, so
+	// only call it when the log must survive the machine going down.
+	public void flush() {
+		buffer.force();
+	}
+
+	public void close() throws IOException {
+		buffer.force();
+		mapper.shutdown();
+		flusher.shutdown();
+
+		// The next segment was made ahead of time and is still empty.
+		try {
+			nextSegment.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// Nothing was made.
+		}
+		Files.deleteIfExists(segmentPath(directory, segmentNumber + 1));
+	}
+
+	// Switch to the next segment, which should already be mapped, and have
+	// the full one forced to disk in the background.
+	private void roll() {
+		MappedByteBuffer full = buffer;
+		try {
+			buffer = nextSegment.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for the next segment", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw new UncheckedIOException("Could not create the next segment", (IOException) cause);
+			throw new IllegalStateException("Could not create the next segment", cause);
+		}
+		segmentNumber++;
+		position = RECORD_SIZE;
+		mapNext();
+		flusher.execute(full::force);
+	}
+
+	private void mapNext() {
+		final int next = segmentNumber + 1;
+		nextSegment = mapper.submit(() -> map(next));
+	}
+
+	private static ExecutorService newDaemonExecutor(String name) {
+		return Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	// Map the segment with the given number, creating it if it is not there.
+	private MappedByteBuffer map(int number) throws IOException {
+		Path file = segmentPath(directory, number);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			long size = channel.size() == 0 ? segmentSize : channel.size();
+			MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			if (segment.getInt(0) == 0) {
+				segment.putInt(0, MAGIC);
+				segment.putInt(4, RECORD_SIZE);
+				segment.putLong(8, number);
+			} else if (segment.getInt(0) != MAGIC || segment.getInt(4) != RECORD_SIZE
+					|| segment.getLong(8) != number || size % RECORD_SIZE != 0) {
+				throw new IOException(file + " is not a hand history segment");
+			}
+			return segment;
+		}
+	}
+
+	// The position just after the last finished record of a segment.
+	private static int findTail(MappedByteBuffer segment) {
+		int p = RECORD_SIZE;
+		while (p < segment.capacity() && segment.getInt(p + FINAL_VALUE) != 0) {
+			p += RECORD_SIZE;
+		}
+		return p;
+	}
+
+	static Path segmentPath(Path directory, int number) {
+		return directory.resolve(String.format("hands-%08d.log", number));
+	}
+
+	// The highest segment number in the directory, -1 if there are none.
+	static int lastSegment(Path directory) throws IOException {
+		int last = -1;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "hands-*.log")) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				last = Math.max(last, Integer.parseInt(name.substring(6, name.length() - 4)));
+			}
+		}
+		return last;
+	}
+}
@@ -0,0 +1,163 @@
+package poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/*
+ * Reads a hand history log (see HandHistoryLog) and adds every record up
+ * into a HandHistoryStats in one pass. Each segment is memory mapped on its
+ * own, so a log of any size is read without loading it into the heap, and
+ * the segments can be read on different threads, each into its own stats,
+ * which are added together at the end.
+ */
+public class HandHistoryReader {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0) {
+			System.out.println(readParallel(args[0]));
+			return;
+		}
+
+		Path directory = Files.createTempDirectory("hands");
+		File file = File.createTempFile("discards", ".dat");
+		file.deleteOnExit();
+		DiscardTable.generate(file.getPath());
+		HandOfCards.setDiscardTable(DiscardTable.load(file.getPath()));
+
+		final int rounds = 250000;
+		final int seats = 4;
+		PokerTable table = new PokerTable(seats, 23L);
+		HandHistoryLog log = new HandHistoryLog(directory.toString(), 100000);
+		table.setHandHistoryLog(log);
+		for (int i = 0; i < rounds; i++) {
+			table.playRound();
+		}
+		log.close();
+
+		long start = System.nanoTime();
+		HandHistoryStats stats = read(directory.toString());
+		long elapsed = System.nanoTime() - start;
+		System.out.println(stats);
+		System.out.println("Read " + stats.getNumberOfHands() + " records at "
+				+ (long) (stats.getNumberOfHands() * 1e9 / elapsed) + " per second");
+
+		// Every hand is counted once in each total, and every round has one
+		// winner or at least two tied hands.
+		long dealt = 0, ended = 0, gains = 0, byDiscards = 0, wins = 0, ties = 0, played = 0;
+		for (HandCategory category : HandCategory.values()) {
+			dealt += stats.getStartingCategoryCount(category);
+			ended += stats.getFinalCategoryCount(category);
+			for (long count : stats.getStrengthGainHistogram(category)) {
+				gains += count;
+			}
+		}
+		for (int discards = 0; discards <= HandOfCards.HAND_SIZE; discards++) {
+			byDiscards += stats.getNumberOfHands(discards);
+		}
+		for (int strategy = 0; strategy < seats; strategy++) {
+			wins += stats.getWins(strategy);
+			ties += stats.getTies(strategy);
+			played += stats.getRoundsPlayed(strategy);
+		}
+		long hands = (long) rounds * seats;
+		System.out.println("Totals" + (stats.getNumberOfHands() == hands && dealt == hands && ended == hands
+				&& gains == hands && byDiscards == hands && played == hands && stats.getImprovementRate(0) == 0
+				&& wins <= rounds && wins + ties / 2 >= rounds ? " - Success" : " - Failed"));
+
+		// Reading the segments in parallel must give the same totals.
+		start = System.nanoTime();
+		HandHistoryStats parallel = readParallel(directory.toString());
+		elapsed = System.nanoTime() - start;
+		System.out.println("Parallel read" + (parallel.toString().equals(stats.toString()) ? " - Success"
+				: " - Failed") + " (" + (long) (parallel.getNumberOfHands() * 1e9 / elapsed) + " per second)");
+
+		for (File segment : directory.toFile().listFiles()) {
+			Files.delete(segment.toPath());
+		}
+		Files.delete(directory);
+	}
+
+	// Read the whole log on this thread.
+	public static HandHistoryStats read(String directory) throws IOException {
+		Path path = Paths.get(directory);
+		HandHistoryStats stats = new HandHistoryStats();
+		for (int segment = 0; segment <= HandHistoryLog.lastSegment(path); segment++) {
+			readSegment(HandHistoryLog.segmentPath(path, segment), stats);
+		}
+		return stats;
+	}
+
+	// Read the segments of the log in parallel on the common ForkJoinPool.
+	public static HandHistoryStats readParallel(String directory) throws IOException {
+		Path path = Paths.get(directory);
+		try {
+			return IntStream.rangeClosed(0, HandHistoryLog.lastSegment(path)).parallel().mapToObj(segment -> {
+				HandHistoryStats stats = new HandHistoryStats();
+				try {
+					readSegment(HandHistoryLog.segmentPath(path, segment), stats);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return stats;
+			}).reduce(new HandHistoryStats(), (a, b) -> {
+				HandHistoryStats sum = new HandHistoryStats();
+				sum.add(a);
+				sum.add(b);
+				return sum;
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	// Add every finished record of one segment to stats. A segment which is
+	// missing (the log was never that long) adds nothing.
+	public static void readSegment(Path segment, HandHistoryStats stats) throws IOException {
+		if (!Files.exists(segment))
+			return;
+
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.capacity() < HandHistoryLog.RECORD_SIZE || buffer.getInt(0) != HandHistoryLog.MAGIC
+					|| buffer.getInt(4) != HandHistoryLog.RECORD_SIZE)
+				throw new IOException(segment + " is not a hand history segment");
+
+			for (int p = HandHistoryLog.RECORD_SIZE; p + HandHistoryLog.RECORD_SIZE <= buffer.capacity();
+					p += HandHistoryLog.RECORD_SIZE) {
+				int value = buffer.getInt(p + HandHistoryLog.FINAL_VALUE);
+				if (value == 0)
+					break;
+
+				// Bytes 0-7 and 8-11 of the record, see HandHistoryLog.
+				long first = buffer.getLong(p);
+				int second = buffer.getInt(p + 8);
+				long initialCards = 0;
+				for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+					initialCards |= CardSet.bit((int) (first >>> (56 - 8 * i)) & 0xFF);
+				}
+				int mask = (int) (first >>> 16) & 0xFF;
+				long finalCards = initialCards;
+				for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+					if ((mask & (1 << i)) != 0)
+						finalCards &= ~CardSet.bit((int) (first >>> (56 - 8 * i)) & 0xFF);
+				}
+				long replacements = (first & 0xFFFF) << 24 | (second >>> 8) & 0xFFFFFFL;
+				for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+					int card = (int) (replacements >>> (32 - 8 * i)) & 0xFF;
+					if (card != HandHistoryLog.NO_CARD)
+						finalCards |= CardSet.bit(card);
+				}
+
+				stats.add(initialCards, finalCards, second & 0xFF, value, mask >>> HandHistoryLog.OUTCOME_SHIFT);
+			}
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package poker;
+
+/*
+ * Totals over the hands in a hand history log (see HandHistoryLog), built up
+ * one record at a time by HandHistoryReader. Stats for different parts of a
+ * log can be counted separately and added together afterwards.
+ *
+ * The value a discard gains is measured in strength rather than game value,
+ * since game values of different categories are not on one scale: the
+ * strength of a hand is the chance it beats a random five card hand (see
+ * DiscardEvaluator.getStrength()), so a gain of 0.25 means the discard took
+ * the hand from beating, say, 40% of hands to beating 65%.
+ */
+public class HandHistoryStats {
+
+	public static final int NUMBER_OF_STRATEGIES = 256;
+
+	// Strength gains are counted in buckets GAIN_BUCKET_WIDTH wide, from -1
+	// (the first bucket) to 1 (the last).
+	public static final int NUMBER_OF_GAIN_BUCKETS = 40;
+	public static final double GAIN_BUCKET_WIDTH = 2.0 / NUMBER_OF_GAIN_BUCKETS;
+
+	// Count one hand. The arguments are the fields of a record, as given to
+	// HandHistoryLog.append().
+	public void add(long initialCards, long finalCards, int strategy, int value, int outcome) {
+		int initialValue = HandEvaluator.evaluate(initialCards);
+		int start = initialValue / HandOfCards.TIER_INTERVAL;
+		int discards = HandOfCards.HAND_SIZE - CardSet.size(initialCards & finalCards);
+
+		hands++;
+		startingCategoryCounts[start]++;
+		finalCategoryCounts[value / HandOfCards.TIER_INTERVAL]++;
+
+		handsByDiscards[discards]++;
+		if (value > initialValue)
+			improvedByDiscards[discards]++;
+
+		// Strengths are doubled counts of hands beaten, see DiscardEvaluator.
+		long gain = DiscardEvaluator.getStrength(value) - DiscardEvaluator.getStrength(initialValue);
+		strengthGainSums[start] += gain;
+		double gainFraction = gain / (2.0 * HandRankTable.NUMBER_OF_HANDS);
+		int bucket = Math.min(NUMBER_OF_GAIN_BUCKETS - 1, (int) ((gainFraction + 1) / GAIN_BUCKET_WIDTH));
+		strengthGains[start * NUMBER_OF_GAIN_BUCKETS + bucket]++;
+
+		strategy &= NUMBER_OF_STRATEGIES - 1;
+		if (outcome != HandHistoryLog.OUTCOME_UNKNOWN)
+			strategyRounds[strategy]++;
+		if (outcome == HandHistoryLog.OUTCOME_WON)
+			strategyWins[strategy]++;
+		else if (outcome == HandHistoryLog.OUTCOME_TIED)
+			strategyTies[strategy]++;
+	}
+
+	// Add the totals of other into these.
+	public void add(HandHistoryStats other) {
+		hands += other.hands;
+		add(startingCategoryCounts, other.startingCategoryCounts);
+		add(finalCategoryCounts, other.finalCategoryCounts);
+		add(handsByDiscards, other.handsByDiscards);
+		add(improvedByDiscards, other.improvedByDiscards);
+		add(strengthGainSums, other.strengthGainSums);
+		add(strengthGains, other.strengthGains);
+		add(strategyRounds, other.strategyRounds);
+		add(strategyWins, other.strategyWins);
+		add(strategyTies, other.strategyTies);
+	}
+
+	private static void add(long[] totals, long[] others) {
+		for (int i = 0; i < totals.length; i++) {
+			totals[i] += others[i];
+		}
+	}
+
+	public long getNumberOfHands() {
+		return hands;
+	}
+
+	// How many hands were dealt in the given category.
+	public long getStartingCategoryCount(HandCategory category) {
+		return startingCategoryCounts[category.ordinal()];
+	}
+
+	// How many hands ended, after the discard, in the given category.
+	public long getFinalCategoryCount(HandCategory category) {
+		return finalCategoryCounts[category.ordinal()];
+	}
+
+	public double getFinalCategoryFrequency(HandCategory category) {
+		return (double) getFinalCategoryCount(category) / hands;
+	}
+
+	// How many hands discarded the given number of cards.
+	public long getNumberOfHands(int discards) {
+		return handsByDiscards[discards];
+	}
+
+	// The share of the hands which discarded the given number of cards that
+	// ended with a higher value than they were dealt.
+	public double getImprovementRate(int discards) {
+		return (double) improvedByDiscards[discards] / handsByDiscards[discards];
+	}
+
+	// The average strength gained by discarding, over the hands dealt in the
+	// given category.
+	public double getMeanStrengthGain(HandCategory start) {
+		return strengthGainSums[start.ordinal()] / (2.0 * HandRankTable.NUMBER_OF_HANDS)
+				/ startingCategoryCounts[start.ordinal()];
+	}
+
+	/*
+	 * The number of hands dealt in the given category whose strength gain
+	 * fell in each bucket: bucket i counts gains from -1 + i * GAIN_BUCKET_WIDTH
+	 * up to the next bucket.
+	 */
+	public long[] getStrengthGainHistogram(HandCategory start) {
+		long[] histogram = new long[NUMBER_OF_GAIN_BUCKETS];
+		System.arraycopy(strengthGains, start.ordinal() * NUMBER_OF_GAIN_BUCKETS, histogram, 0,
+				NUMBER_OF_GAIN_BUCKETS);
+		return histogram;
+	}
+
+	// The number of hands the strategy played against other hands.
+	public long getRoundsPlayed(int strategy) {
+		return strategyRounds[strategy];
+	}
+
+	public long getWins(int strategy) {
+		return strategyWins[strategy];
+	}
+
+	public long getTies(int strategy) {
+		return strategyTies[strategy];
+	}
+
+	// The share of its rounds the strategy won outright.
+	public double getWinRate(int strategy) {
+		return (double) strategyWins[strategy] / strategyRounds[strategy];
+	}
+
+	public double getTieRate(int strategy) {
+		return (double) strategyTies[strategy] / strategyRounds[strategy];
+	}
+
+	// A report of everything counted.
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append("Hands: ").append(hands).append('\n');
+
+		report.append("\nCategory\tDealt\tFinal\tFrequency\tMean strength gain\n");
+		for (HandCategory category : HandCategory.values()) {
+			report.append(category).append('\t').append(getStartingCategoryCount(category)).append('\t')
+					.append(getFinalCategoryCount(category)).append('\t')
+					.append(String.format("%.6f", getFinalCategoryFrequency(category))).append('\t');
+			if (getStartingCategoryCount(category) > 0)
+				report.append(String.format("%+.4f", getMeanStrengthGain(category)));
+			report.append('\n');
+		}
+
+		report.append("\nDiscards\tHands\tImproved\n");
+		for (int discards = 0; discards <= HandOfCards.HAND_SIZE; discards++) {
+			if (handsByDiscards[discards] > 0)
+				report.append(discards).append('\t').append(handsByDiscards[discards]).append('\t')
+						.append(String.format("%.4f", getImprovementRate(discards))).append('\n');
+		}
+
+		report.append("\nStrategy\tRounds\tWin rate\tTie rate\n");
+		for (int strategy = 0; strategy < NUMBER_OF_STRATEGIES; strategy++) {
+			if (strategyRounds[strategy] > 0)
+				report.append(strategy).append('\t').append(strategyRounds[strategy]).append('\t')
+						.append(String.format("%.4f\t%.4f", getWinRate(strategy), getTieRate(strategy)))
+						.append('\n');
+		}
+		return report.toString();
+	}
+
+	private long hands;
+	private final long[] startingCategoryCounts = new long[DiscardEvaluator.NUMBER_OF_CATEGORIES];
+	private final long[] finalCategoryCounts = new long[DiscardEvaluator.NUMBER_OF_CATEGORIES];
+	private final long[] handsByDiscards = new long[HandOfCards.HAND_SIZE + 1];
+	private final long[] improvedByDiscards = new long[HandOfCards.HAND_SIZE + 1];
+	private final long[] strengthGainSums = new long[DiscardEvaluator.NUMBER_OF_CATEGORIES];
+	private final long[] strengthGains = new long[DiscardEvaluator.NUMBER_OF_CATEGORIES * NUMBER_OF_GAIN_BUCKETS];
+	private final long[] strategyRounds = new long[NUMBER_OF_STRATEGIES];
+	private final long[] strategyWins = new long[NUMBER_OF_STRATEGIES];
+	private final long[] strategyTies = new long[NUMBER_OF_STRATEGIES];
+}
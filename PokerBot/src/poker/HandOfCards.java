@@ -1,8 +1,7 @@
 package poker;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 
 public class HandOfCards {
 
@@ -13,263 +12,231 @@ public class HandOfCards {
 	 * interval values such as 1,970,000. Having round numbers makes it much
 	 * clearer which tier a hand belongs to.
 	 */
-	private static final int HIGH_CARD_DEFAULT = 0;
-	private static final int ONE_PAIR_DEFAULT = 1000000;
-	private static final int TWO_PAIR_DEFAULT = 2000000;
-	private static final int THREE_OF_A_KIND_DEFAULT = 3000000;
-	private static final int STRAIGHT_DEFAULT = 4000000;
-	private static final int FLUSH_DEFAULT = 5000000;
-	private static final int FULL_HOUSE_DEFAULT = 6000000;
-	private static final int FOUR_OF_A_KIND_DEFAULT = 7000000;
-	private static final int STRAIGHT_FLUSH_DEFAULT = 8000000;
-	private static final int ROYAL_FLUSH_DEFAULT = 9000000;
+	static final int HIGH_CARD_DEFAULT = 0;
+	static final int ONE_PAIR_DEFAULT = 1000000;
+	static final int TWO_PAIR_DEFAULT = 2000000;
+	static final int THREE_OF_A_KIND_DEFAULT = 3000000;
+	static final int STRAIGHT_DEFAULT = 4000000;
+	static final int FLUSH_DEFAULT = 5000000;
+	static final int FULL_HOUSE_DEFAULT = 6000000;
+	static final int FOUR_OF_A_KIND_DEFAULT = 7000000;
+	static final int STRAIGHT_FLUSH_DEFAULT = 8000000;
+	static final int ROYAL_FLUSH_DEFAULT = 9000000;
+	static final int TIER_INTERVAL = 1000000;
 
 	private ArrayList<PlayingCard> hand;
 	public static final int HAND_SIZE = 5;
 	private DeckOfCards deck;
 
+	/*
+	 * Everything below is worked out in one pass over the cards by classify()
+	 * whenever the hand changes (every change ends with a call to sort()), so
+	 * the is*() methods, getGameValue() and the discard logic never have to
+	 * re-examine the cards. rankCounts is indexed by game value and suitCounts
+	 * by PlayingCard.getSuitIndex().
+	 */
+	private HandCategory category;
+	private int gameValue;
+	private final int[] rankCounts = new int[PlayingCard.ACE_GAME_VALUE + 1];
+	private final int[] suitCounts = new int[DeckOfCards.NUMBER_OF_SUITS];
+	// Draws, see DrawTables. straightBreakMask has bit i set for each card
+	// position to throw away when drawing to the nearest straight.
+	private int straightProximity;
+	private int straightBreakMask;
+	private int flushSuit;
+	// The cards as a CardSet mask.
+	private long cardMask;
+
+	// Scratch space for discard(), kept so that a round allocates nothing.
+	private final int[] cardIndices = new int[HAND_SIZE];
+	private final int[] permutation = new int[DeckOfCards.NUMBER_OF_SUITS];
+	// Calls counted to pick which ones Metrics times.
+	private int metricsCalls;
+	// Discards not added to Metrics.HANDS yet, see HandCounters. Only
+	// there when metrics are on.
+	private final int[] pendingDiscards = Metrics.ENABLED ? new int[HandCounters.NUMBER_OF_KEYS] : null;
+	private int pendingDiscardCount;
+
+	// Shared by every hand. Null until setDiscardTable() is called.
+	private static DiscardTable discardTable;
+	// Shared by every hand. Null until setHandRankTable() is called.
+	private static HandRankTable handRankTable;
+
 	public HandOfCards(DeckOfCards d) {
 		this.deck = d;
-		hand = new ArrayList<PlayingCard>();
+		hand = new ArrayList<PlayingCard>(HAND_SIZE);
 		deal();
 	}
 
+	// Make a hand from the given cards instead of dealing one, for tests and
+	// benchmarks which need a particular hand. The cards are not taken from
+	// the deck; the deck is only used for discards.
+	HandOfCards(DeckOfCards d, PlayingCard... cards) {
+		this.deck = d;
+		hand = new ArrayList<PlayingCard>(Arrays.asList(cards));
+		sort();
+	}
+
 	public DeckOfCards getDeck() {
 		return deck;
 	}
 
+	// Make discard() look its decisions up in the given table (see
+	// DiscardTable.load()) instead of working them out each time.
+	public static void setDiscardTable(DiscardTable table) {
+		discardTable = table;
+	}
+
+	// The table set by setDiscardTable(), or null.
+	public static DiscardTable getDiscardTable() {
+		return discardTable;
+	}
+
+	// Make hands read their values from the given table (see
+	// HandRankTable.load()) instead of working them out with HandEvaluator.
+	public static void setHandRankTable(HandRankTable table) {
+		handRankTable = table;
+	}
+
+	// The table set by setHandRankTable(), or null.
+	public static HandRankTable getHandRankTable() {
+		return handRankTable;
+	}
+
 	/*
 	 * Deals cards to the hand and stores them in the private ArrayList hand.
 	 * After dealing the cards it sorts them by calling sort().
 	 */
 	private void deal() {
+		Object event = GameEventHook.HOOK.beginDeal();
 		for (int i = 0; i < HAND_SIZE; i++) {
 			hand.add(deck.dealNext());
 		}
 
 		sort();
+		GameEventHook.HOOK.endDeal(event, category);
 	}
 
 	/*
-	 * Sorts the cards in the hand putting the highest game value card in the
-	 * first position and the lowest game value card in the last position.
+	 * Give the cards back and deal five new ones into this same hand. Unlike
+	 * creating a new HandOfCards this does not allocate anything, so a player
+	 * can keep one hand for every round.
 	 */
-	private void sort() {
-		Collections.sort(hand, new Comparator<PlayingCard>() {
-			public int compare(PlayingCard c1, PlayingCard c2) {
-				return c2.getGameValue() - c1.getGameValue();
-			}
-		});
+	public void redeal() {
+		Object event = GameEventHook.HOOK.beginDeal();
+		for (int i = 0; i < HAND_SIZE; i++) {
+			deck.returnCard(hand.get(i));
+			hand.set(i, deck.dealNext());
+		}
+
+		sort();
+		GameEventHook.HOOK.endDeal(event, category);
 	}
 
 	/*
-	 * Helper function used to determine whether a hand forms a 'run' meaning
-	 * that the highest card is one above the second highest card and the second
-	 * highest card is one above the third highest card and so on for all cards
-	 * in the hand.
+	 * Sorts the cards in the hand putting the highest game value card in the
+	 * first position and the lowest game value card in the last position.
+	 * The hand is then classified again since its cards may have changed.
+	 * A hand always has five cards so a fixed sorting network of nine
+	 * compare and swaps does the job without a Comparator or any copying.
 	 */
-	private boolean isRun() {
-		boolean lowValueRun = false;
-		if (hand.get(0).getGameValue() == PlayingCard.ACE_GAME_VALUE
-				&& hand.get(4).getGameValue() == PlayingCard.TWO_GAME_VALUE)
-			lowValueRun = true;
-
-		if (lowValueRun) {
-			return ((hand.get(1).getGameValue() - hand.get(2).getGameValue())
-					* (hand.get(2).getGameValue() - hand.get(3).getGameValue())
-					* (hand.get(3).getGameValue() - hand.get(4).getGameValue()) == 1)
-					&& hand.get(4).getGameValue() == PlayingCard.TWO_GAME_VALUE;
-		} else {
-			return ((hand.get(0).getGameValue() - hand.get(1).getGameValue())
-					* (hand.get(1).getGameValue() - hand.get(2).getGameValue())
-					* (hand.get(2).getGameValue() - hand.get(3).getGameValue())
-					* (hand.get(3).getGameValue() - hand.get(4).getGameValue()) == 1);
-		}
-	}
-
-	// Determines whether all the cards in the hand are of the same suit.
-	private boolean sameSuit() {
-		return ((hand.get(0).getSuit() == hand.get(1).getSuit()) && (hand.get(0).getSuit() == hand.get(2).getSuit())
-				&& (hand.get(0).getSuit() == hand.get(3).getSuit())
-				&& (hand.get(0).getSuit() == hand.get(4).getSuit()));
+	private void sort() {
+		compareAndSwap(0, 1);
+		compareAndSwap(3, 4);
+		compareAndSwap(2, 4);
+		compareAndSwap(2, 3);
+		compareAndSwap(0, 3);
+		compareAndSwap(0, 2);
+		compareAndSwap(1, 4);
+		compareAndSwap(1, 3);
+		compareAndSwap(1, 2);
+
+		classify();
 	}
 
-	private int getHighHandValue() {
-		int handValue = HandOfCards.HIGH_CARD_DEFAULT;
-		handValue += Math.pow(hand.get(0).getGameValue(), 5);
-		handValue += Math.pow(hand.get(1).getGameValue(), 4);
-		handValue += Math.pow(hand.get(2).getGameValue(), 3);
-		handValue += Math.pow(hand.get(3).getGameValue(), 2);
-		handValue += hand.get(0).getGameValue();
-		return handValue;
+	// The value of the hand, whose cards are given as a CardSet mask.
+	private int evaluate(long cards) {
+		HandRankTable table = handRankTable;
+		if (table != null)
+			return table.getValue(cards);
+		return HandEvaluator.evaluate(hand.get(0), hand.get(1), hand.get(2), hand.get(3), hand.get(4));
 	}
 
-	// Weight the pair, then high card, then next highest card and so on.
-	private int getOnePairValue() {
-		// Find the index where the pair begins in the hand.
-		// Initialise the hand value at the one pair default value.
-		int handValue = HandOfCards.ONE_PAIR_DEFAULT;
-		int pairIndex = findPairStartIndex(0);
-
-		// Since the hand is sorted, the positions of the high cards are known.
-		if (pairIndex == 0) {
-			handValue += Math.pow(hand.get(1).getGameValue(), 3);
-			handValue += Math.pow(hand.get(2).getGameValue(), 2);
-			handValue += hand.get(3).getGameValue();
-		} else if (pairIndex == 1) {
-			handValue += Math.pow(hand.get(0).getGameValue(), 3);
-			handValue += Math.pow(hand.get(3).getGameValue(), 2);
-			handValue += hand.get(4).getGameValue();
-		} else if (pairIndex == 2) {
-			handValue += Math.pow(hand.get(0).getGameValue(), 3);
-			handValue += Math.pow(hand.get(1).getGameValue(), 2);
-			handValue += hand.get(4).getGameValue();
-		} else if (pairIndex == 3) {
-			handValue += Math.pow(hand.get(0).getGameValue(), 3);
-			handValue += Math.pow(hand.get(1).getGameValue(), 2);
-			handValue += hand.get(2).getGameValue();
+	// Put the higher of the cards at positions i and j (i < j) first.
+	private void compareAndSwap(int i, int j) {
+		PlayingCard first = hand.get(i);
+		PlayingCard second = hand.get(j);
+		if (first.getGameValue() < second.getGameValue()) {
+			hand.set(i, second);
+			hand.set(j, first);
 		}
-
-		handValue += Math.pow(hand.get(pairIndex).getGameValue(), 5);
-		return handValue;
 	}
 
-	// Weight the highest value pair, then the other pair, then the kicker
-	// (remaining card).
-	private int getTwoPairValue() {
-		// Initialise the hand value to the two pair default value.
-		// Find the indexes of each pair in the hand.
-		int handValue = HandOfCards.TWO_PAIR_DEFAULT;
-		int index1 = findPairStartIndex(0);
-		int index2 = findPairStartIndex(index1 + 1);
-
-		// Add the value of the kicker to the hand value.
-		if (index1 == 0 && index2 == 3) {
-			handValue += hand.get(2).getGameValue();
-		} else if (index1 == 1 && index2 == 3) {
-			handValue += hand.get(0).getGameValue();
-		} else if (index1 == 0 && index2 == 2) {
-			handValue += hand.get(4).getGameValue();
+	// Count the ranks and suits in the hand and score it.
+	private void classify() {
+		Arrays.fill(rankCounts, 0);
+		Arrays.fill(suitCounts, 0);
+		long cards = 0;
+		int rankMask = 0;
+		for (int i = 0; i < HAND_SIZE; i++) {
+			PlayingCard card = hand.get(i);
+			rankCounts[card.getGameValue()]++;
+			suitCounts[PlayingCard.getSuitIndex(card.getSuit())]++;
+			cards |= CardSet.bit(card);
+			rankMask |= rankBit(card);
+		}
+
+		Object event = GameEventHook.HOOK.beginEvaluation();
+		long start = 0;
+		if (Metrics.ENABLED && (++metricsCalls & Metrics.SAMPLE_MASK) == 0)
+			start = System.nanoTime();
+		gameValue = evaluate(cards);
+		if (start != 0)
+			Metrics.EVALUATE.record(System.nanoTime() - start);
+		category = HandCategory.fromGameValue(gameValue);
+		GameEventHook.HOOK.endEvaluation(event, category, gameValue);
+		cardMask = cards;
+		flushSuit = DrawTables.getFlushDrawSuit(cards);
+		straightProximity = DrawTables.getStraightProximity(rankMask);
+
+		// Break the cards whose rank is not in the nearest straight, and the
+		// second card of any pair.
+		int keepRanks = DrawTables.getStraightKeepRanks(rankMask);
+		int keptRanks = 0;
+		straightBreakMask = 0;
+		for (int i = 0; i < HAND_SIZE; i++) {
+			int rank = rankBit(hand.get(i));
+			if ((keepRanks & rank) == 0 || (keptRanks & rank) != 0)
+				straightBreakMask |= 1 << i;
+			keptRanks |= rank;
 		}
-
-		// Add the value of the greatest pair to the power of 4.
-		// Add the value of the second greatest pair to the power of 3.
-		handValue += Math.pow(hand.get(index1).getGameValue(), 4);
-		handValue += Math.pow(hand.get(index2).getGameValue(), 3);
-		return handValue;
 	}
 
-	// Get the highest value card in the straight and add it to the default
-	// value.
-	private int getStraightValue() {
-		int handValue = 0;
-
-		// If the hand contains an ace - determine whether it is an ace low
-		// or ace high.
-		// If it is an ace low, then get the next highest card in the hand.
-		if (hand.get(0).getGameValue() == PlayingCard.ACE_GAME_VALUE) {
-			if (hand.get(4).getGameValue() == PlayingCard.TWO_GAME_VALUE) {
-				handValue = 4;
-			} else {
-				handValue = 14;
-			}
-		} else {
-			handValue = hand.get(0).getGameValue();
-		}
-
-		return handValue + HandOfCards.STRAIGHT_DEFAULT;
+	// The bit for a card's rank in a 13 bit rank mask.
+	private static int rankBit(PlayingCard card) {
+		return 1 << (card.getGameValue() - PlayingCard.TWO_GAME_VALUE);
 	}
 
-	// Weight the three of a kind over the two pair.
-	private int getFullHouseValue() {
-		boolean threeOfAKindAtStart = false;
-		int handValue = FULL_HOUSE_DEFAULT;
-
-		if (hand.get(0).getGameValue() == hand.get(2).getGameValue()) {
-			threeOfAKindAtStart = true;
-		}
-
-		if (threeOfAKindAtStart) {
-			handValue += Math.pow(hand.get(0).getGameValue(), 3) + Math.pow(hand.get(3).getGameValue(), 2);
-		} else {
-			handValue += Math.pow(hand.get(2).getGameValue(), 3) + Math.pow(hand.get(0).getGameValue(), 2);
+	// The cards in the hand as a CardSet.
+	public CardSet getCardSet() {
+		CardSet cards = new CardSet();
+		for (PlayingCard card : hand) {
+			cards.add(card);
 		}
-
-		return handValue;
+		return cards;
 	}
 
-	// Add the highest card in the straight to the default value.
-	private int getStraightFlushValue() {
-		boolean containsAce = false;
-		int handValue = 0;
-
-		if (hand.get(0).getGameValue() == PlayingCard.ACE_GAME_VALUE) {
-			containsAce = true;
-		}
-
-		if (containsAce) {
-			if (hand.get(4).getGameValue() == PlayingCard.TWO_GAME_VALUE) {
-				handValue = 4;
-			} else {
-				handValue = 14;
-			}
-		} else {
-			handValue = hand.get(0).getGameValue();
-		}
-
-		return handValue + HandOfCards.STRAIGHT_FLUSH_DEFAULT;
+	public HandCategory getCategory() {
+		return category;
 	}
 
+	/*
+	 * Scores the hand. Hands in a higher tier (one pair over high card, two
+	 * pair over one pair and so on) are always worth more, and hands within a
+	 * tier are ordered by the cards that decide a showdown. See HandEvaluator.
+	 */
 	public int getGameValue() {
-		// Weight the highest card over the next highest card and so on.
-		if (isHighHand()) {
-			return getHighHandValue();
-		}
-
-		if (isOnePair()) {
-			return getOnePairValue();
-		}
-
-		if (isTwoPair()) {
-			return getTwoPairValue();
-		}
-
-		// Adds the card value of the three of a kind to the default value.
-		if (isThreeOfAKind()) {
-			int index = findPairStartIndex(0);
-			return hand.get(index).getGameValue() + HandOfCards.THREE_OF_A_KIND_DEFAULT;
-		}
-
-		// Adds the card value of the four of a kind to the default value.
-		if (isFourOfAKind()) {
-			int index = findPairStartIndex(0);
-			return hand.get(index).getGameValue() + HandOfCards.FOUR_OF_A_KIND_DEFAULT;
-		}
-
-		if (isStraight()) {
-			return getStraightValue();
-		}
-
-		// The same principle as high hand.
-		if (isFlush()) {
-			return HandOfCards.FLUSH_DEFAULT + getHighHandValue();
-		}
-
-		if (isFullHouse()) {
-			return getFullHouseValue();
-		}
-
-		if (isStraightFlush()) {
-			return getStraightFlushValue();
-		}
-
-		// All royal flushes are the same (disregarding suit) so just add 10,000
-		// to the default value.
-		if (isRoyalFlush()) {
-			return HandOfCards.ROYAL_FLUSH_DEFAULT + 10000;
-		}
-
-		return 0;
+		return gameValue;
 	}
 
 	private int findPairStartIndex(int offset) {
@@ -284,33 +251,28 @@ public class HandOfCards {
 
 	// Determines whether the hand contains one pair.
 	public boolean isOnePair() {
-		return ((hand.get(0).getGameValue() == hand.get(1).getGameValue())
-				|| (hand.get(1).getGameValue() == hand.get(2).getGameValue())
-				|| (hand.get(2).getGameValue() == hand.get(3).getGameValue())
-				|| (hand.get(3).getGameValue() == hand.get(4).getGameValue())) && !isFourOfAKind() && !isThreeOfAKind()
-				&& !isTwoPair() && !isFullHouse();
+		return category == HandCategory.ONE_PAIR;
 	}
 
 	// Determines whether the hand is a straight.
 	public boolean isStraight() {
-		return isRun() && !sameSuit();
+		return category == HandCategory.STRAIGHT;
 	}
 
 	// Determines whether the hand is a high hand.
 	public boolean isHighHand() {
-		return !isFourOfAKind() && !isThreeOfAKind() && !isTwoPair() && !isOnePair() && !isStraight() && !sameSuit()
-				&& !isFullHouse();
+		return category == HandCategory.HIGH_HAND;
 	}
 
 	// Determines whether the hand is a flush.
 	public boolean isFlush() {
-		return !isRun() && sameSuit();
+		return category == HandCategory.FLUSH;
 	}
 
 	// Determines whether the hand is a straight flush (meaning the cards are in
-	// order and t.
+	// order and of the same suit, but not ace high).
 	public boolean isStraightFlush() {
-		return isRun() && sameSuit() && !isRoyalFlush();
+		return category == HandCategory.STRAIGHT_FLUSH;
 	}
 
 	/*
@@ -318,69 +280,22 @@ public class HandOfCards {
 	 * same value cards, and one pair of same value cards).
 	 */
 	public boolean isFullHouse() {
-		boolean pair = false;
-		boolean threeOfAKind = false;
-
-		if ((hand.get(0).getGameValue() == hand.get(1).getGameValue()
-				&& hand.get(0).getGameValue() != hand.get(2).getGameValue())
-				|| ((hand.get(3).getGameValue() == hand.get(4).getGameValue()
-						&& hand.get(2).getGameValue() != hand.get(3).getGameValue()))) {
-			pair = true;
-		}
-
-		if ((hand.get(0).getGameValue() == hand.get(1).getGameValue()
-				&& hand.get(0).getGameValue() == hand.get(2).getGameValue())
-				|| ((hand.get(2).getGameValue() == hand.get(3).getGameValue()
-						&& hand.get(2).getGameValue() == hand.get(4).getGameValue()))) {
-			threeOfAKind = true;
-		}
-
-		return pair && threeOfAKind;
+		return category == HandCategory.FULL_HOUSE;
 	}
 
 	// Determines whether the hand contains two pairs of same value cards.
 	public boolean isTwoPair() {
-		if ((hand.get(0).getGameValue() == hand.get(1).getGameValue()
-				&& hand.get(2).getGameValue() == hand.get(3).getGameValue())) {
-			return hand.get(0).getGameValue() != hand.get(2).getGameValue();
-		}
-		
-
-		if ((hand.get(0).getGameValue() == hand.get(1).getGameValue()
-				&& hand.get(3).getGameValue() == hand.get(4).getGameValue())) {
-			return hand.get(0).getGameValue() != hand.get(3).getGameValue();
-		}
-
-		if (hand.get(1).getGameValue() == hand.get(2).getGameValue()
-				&& hand.get(3).getGameValue() == hand.get(4).getGameValue())
-			return hand.get(1).getGameValue() != hand.get(3).getGameValue();
-
-		return false;
+		return category == HandCategory.TWO_PAIR;
 	}
 
 	// Determines whether the hand contains three of the same value card.
 	public boolean isThreeOfAKind() {
-		return ((hand.get(0).getGameValue() == hand.get(1).getGameValue()
-				&& hand.get(1).getGameValue() == hand.get(2).getGameValue()
-				&& hand.get(0).getGameValue() != hand.get(3).getGameValue())
-				|| (hand.get(1).getGameValue() == hand.get(2).getGameValue()
-						&& hand.get(2).getGameValue() == hand.get(3).getGameValue()
-						&& hand.get(1).getGameValue() != hand.get(4).getGameValue())
-				|| (hand.get(2).getGameValue() == hand.get(3).getGameValue()
-						&& hand.get(3).getGameValue() == hand.get(4).getGameValue()
-						&& hand.get(1).getGameValue() != hand.get(4).getGameValue()))
-				&& !isFullHouse() && !isFourOfAKind();
+		return category == HandCategory.THREE_OF_A_KIND;
 	}
 
 	// Determines whether the hand contains four of the same value card.
 	public boolean isFourOfAKind() {
-		return ((hand.get(0).getGameValue() == hand.get(1).getGameValue()
-				&& hand.get(2).getGameValue() == hand.get(3).getGameValue()
-				&& (hand.get(0).getGameValue() == hand.get(3).getGameValue())
-				|| (hand.get(1).getGameValue() == hand.get(2).getGameValue()
-						&& hand.get(3).getGameValue() == hand.get(4).getGameValue()
-						&& hand.get(1).getGameValue() == hand.get(4).getGameValue())))
-				&& !isTwoPair();
+		return category == HandCategory.FOUR_OF_A_KIND;
 	}
 
 	/*
@@ -388,183 +303,37 @@ public class HandOfCards {
 	 * order and of the same suit AND that the highest value card is an ace).
 	 */
 	public boolean isRoyalFlush() {
-		return sameSuit() && isRun() && hand.get(0).getGameValue() == PlayingCard.ACE_GAME_VALUE;
-	}
-
-	private int findCardIndexInHandByGameValue(int gameValue, int offset) {
-		for (int i = offset; i < HAND_SIZE; i++) {
-			if (hand.get(i).getGameValue() == gameValue) {
-				return i;
-			}
-		}
-		return -1;
-	}
-
-	private boolean handContainsCardByGameValue(int gameValue) {
-		if (gameValue < 2 || gameValue > 14)
-			return false;
-		for (int i = 0; i < HAND_SIZE; i++) {
-			if (hand.get(i).getGameValue() == gameValue) {
-				return true;
-			}
-		}
-		return false;
+		return category == HandCategory.ROYAL_FLUSH;
 	}
 
-	// Determine how close a hand is to becoming a straight.
+	// Determine how close a hand is to becoming a straight: the number of
+	// cards it is missing from the nearest one.
 	private int determineProximityToStraight() {
-		// A hand which is not a straight, is at most 4 cards away from becoming
-		// a straight.
-		final int PROXIMITY_TO_STRAIGHT = 4;
-		int proximity = PROXIMITY_TO_STRAIGHT;
-		boolean containsAce = false;
-		int lastCardValue = hand.get(0).getGameValue();
-
-		if (lastCardValue == PlayingCard.ACE_GAME_VALUE)
-			containsAce = true;
-
-		// Edge case: determines if a hand is close to an ace low straight.
-		if (containsAce) {
-			if (hand.get(4).getGameValue() == PlayingCard.TWO_GAME_VALUE
-					&& hand.get(3).getGameValue() == PlayingCard.THREE_GAME_VALUE
-					&& hand.get(2).getGameValue() == PlayingCard.FOUR_GAME_VALUE) {
-				return 1;
-			} else if (hand.get(4).getGameValue() == PlayingCard.TWO_GAME_VALUE
-					&& hand.get(3).getGameValue() == PlayingCard.FOUR_GAME_VALUE
-					&& hand.get(2).getGameValue() == PlayingCard.FIVE_GAME_VALUE) {
-				return 1;
-			} else if (hand.get(4).getGameValue() == PlayingCard.THREE_GAME_VALUE
-					&& hand.get(3).getGameValue() == PlayingCard.FOUR_GAME_VALUE
-					&& hand.get(2).getGameValue() == PlayingCard.FIVE_GAME_VALUE) {
-				return 1;
-			}
-		}
-
-		for (int i = 1; i < HAND_SIZE; i++) {
-			if (findCardIndexInHandByGameValue(lastCardValue - 1, i) != -1) {
-				proximity--;
-			} else {
-				if (findCardIndexInHandByGameValue(lastCardValue - 2, i) != -1) {
-					proximity--;
-					if (proximity <= 2)
-						break;
-				}
-			}
-			if (lastCardValue - hand.get(i).getGameValue() > 3) {
-				if (proximity <= 2)
-					break;
-				else {
-					proximity++;
-					if (proximity > PROXIMITY_TO_STRAIGHT)
-						proximity = PROXIMITY_TO_STRAIGHT;
-				}
-			}
-			lastCardValue = hand.get(i).getGameValue();
-		}
-
-		// Check for 3 off straight.
-		if (proximity > 2) {
-			for (int i = 0; i < HAND_SIZE; i++) {
-				for (int a = -4; a < 5; a++) {
-					if (handContainsCardByGameValue(hand.get(i).getGameValue() + a))
-						return 3;
-				}
-			}
-		}
-
-		return proximity;
-	}
-
-	// Count the number of times a suit occurs in a hand.
-	// If the suit occurs 3 or more times then return a string of two
-	// characters, otherwise return null.
-	// The first character represents the suit and the second character is a
-	// number representing the number of times that suit occurs in the hand.
-	private String countSuitFrequency() {
-		int heartsFrequency = 0;
-		int diamondsFrequency = 0;
-		int clubsFrequency = 0;
-		int spadesFrequency = 0;
-		for (int i = 0; i < HAND_SIZE; i++) {
-			switch (hand.get(i).getSuit()) {
-			case PlayingCard.DIAMONDS:
-				diamondsFrequency++;
-				break;
-			case PlayingCard.HEARTS:
-				heartsFrequency++;
-				break;
-			case PlayingCard.SPADES:
-				spadesFrequency++;
-				break;
-			case PlayingCard.CLUBS:
-				clubsFrequency++;
-				break;
-			}
-		}
-
-		if (diamondsFrequency == HAND_SIZE - 1 || diamondsFrequency == HAND_SIZE - 2
-				|| diamondsFrequency == HAND_SIZE - 3) {
-			return "" + PlayingCard.DIAMONDS + diamondsFrequency;
-		} else if (heartsFrequency == HAND_SIZE - 1 || heartsFrequency == HAND_SIZE - 2
-				|| heartsFrequency == HAND_SIZE - 3) {
-			return "" + PlayingCard.HEARTS + heartsFrequency;
-		} else if (clubsFrequency == HAND_SIZE - 1 || clubsFrequency == HAND_SIZE - 2
-				|| clubsFrequency == HAND_SIZE - 3) {
-			return "" + PlayingCard.CLUBS + clubsFrequency;
-		} else if (spadesFrequency == HAND_SIZE - 1 || spadesFrequency == HAND_SIZE - 2
-				|| spadesFrequency == HAND_SIZE - 3) {
-			return "" + PlayingCard.SPADES + spadesFrequency;
-		} else
-			return null;
+		return straightProximity;
 	}
 
 	// Find which cards should be discarded in a broken straight.
 	// If the broken straight is one off a straight then the problem card should
 	// receive the oneOffProbability.
-	// If the broken straight is two off a straight then the problem card should
+	// If the broken straight is two off a straight then the problem cards should
 	// receive the twoOffProbability.
 	// A broken straight which is three off a straight is too unlikely to be
 	// obtained by trading in 3 cards.
 	private int findProblemCardsInBrokenStraight(int cardPosition, int oneOffProbability, int twoOffProbability) {
-		int straightProximity = determineProximityToStraight();
-		if (straightProximity <= 2) {
-			if (straightProximity == 1) {
-				int lastCardValue = hand.get(0).getGameValue();
-
-				int problemCardIndex = -1;
-				for (int i = 0; i < HAND_SIZE - 1; i++) {
-					if (!(findCardIndexInHandByGameValue(lastCardValue - 1, i + 1) != -1
-							|| findCardIndexInHandByGameValue(lastCardValue - 2, i + 1) != -1)) {
-						problemCardIndex = i + 1;
-						break;
-					}
-					lastCardValue = hand.get(i + 1).getGameValue();
-				}
-				if (problemCardIndex == cardPosition)
-					return oneOffProbability;
-				else
-					return 0;
-			} else if (straightProximity == 2) {
-				int firstHalfOfHandDifference = hand.get(0).getGameValue() - hand.get(1).getGameValue()
-						+ hand.get(1).getGameValue() - hand.get(2).getGameValue();
-				int secondHalfOfHandDifference = hand.get(2).getGameValue() - hand.get(3).getGameValue()
-						+ hand.get(3).getGameValue() - hand.get(4).getGameValue();
-
-				if (firstHalfOfHandDifference > secondHalfOfHandDifference) {
-					if (cardPosition == 0 || cardPosition == 1) {
-						return twoOffProbability;
-					} else
-						return 0;
-				} else {
-					if (cardPosition == 3 || cardPosition == 4) {
-						return twoOffProbability;
-					} else
-						return 0;
-				}
-			} else
-				return 0;
-		} else
+		if ((straightBreakMask & (1 << cardPosition)) == 0)
 			return 0;
+
+		if (straightProximity == 1)
+			return oneOffProbability;
+		else if (straightProximity == 2)
+			return twoOffProbability;
+		else
+			return 0;
+	}
+
+	// Whether the card at a position is outside the suit with the most cards.
+	private boolean isOffSuit(int cardPosition) {
+		return PlayingCard.getSuitIndex(hand.get(cardPosition).getSuit()) != flushSuit;
 	}
 
 	// Find the cards in a high hand which should be discarded in order to
@@ -572,81 +341,18 @@ public class HandOfCards {
 	private int getHighHandDiscardProbability(int cardPosition) {
 		// High hand doesn't calculate odds of getting a better hand since the
 		// player should always attempt to obtain one.
-		String suitFrequency = countSuitFrequency();
 		int straightProximity = determineProximityToStraight();
+		int flushCount = suitCounts[flushSuit];
 
 		// Check if it is possible to obtain a flush from the current hand. If
-		// so then determine which
-		// cards should be discarded. Return a non-zero for these cards and 0
-		// for the remaining cards.
-		if (suitFrequency != null) {
-			if (suitFrequency.equals("D4")) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.DIAMONDS)
-					return 100;
-				else
-					return 0;
-			} else if (suitFrequency.equals("D3")) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.DIAMONDS)
-					return 50;
-				else
-					return 0;
-			} else if (suitFrequency.equals("D2") && straightProximity > 2) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.DIAMONDS)
-					return 33;
-				else
-					return 0;
-			}
-
-			if (suitFrequency.equals("C4")) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.CLUBS)
-					return 100;
-				else
-					return 0;
-			} else if (suitFrequency.equals("C3")) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.CLUBS)
-					return 50;
-				else
-					return 0;
-			} else if (suitFrequency.equals("C2") && straightProximity > 2) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.CLUBS)
-					return 33;
-				else
-					return 0;
-			}
-
-			if (suitFrequency.equals("S4")) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.SPADES)
-					return 100;
-				else
-					return 0;
-			} else if (suitFrequency.equals("S3")) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.SPADES)
-					return 50;
-				else
-					return 0;
-			} else if (suitFrequency.equals("S2") && straightProximity > 2) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.SPADES)
-					return 33;
-				else
-					return 0;
-			}
-
-			if (suitFrequency.equals("H4")) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.HEARTS)
-					return 100;
-				else
-					return 0;
-			} else if (suitFrequency.equals("H3")) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.HEARTS)
-					return 50;
-				else
-					return 0;
-			} else if (suitFrequency.equals("H2") && straightProximity > 2) {
-				if (hand.get(cardPosition).getSuit() != PlayingCard.HEARTS)
-					return 33;
-				else
-					return 0;
-			}
+		// so then the cards outside the flush suit should be discarded. Return
+		// a non-zero for these cards and 0 for the remaining cards.
+		if (flushCount == HAND_SIZE - 1) {
+			return isOffSuit(cardPosition) ? 100 : 0;
+		} else if (flushCount == HAND_SIZE - 2) {
+			return isOffSuit(cardPosition) ? 50 : 0;
+		} else if (flushCount == HAND_SIZE - 3 && straightProximity > 2) {
+			return isOffSuit(cardPosition) ? 33 : 0;
 		}
 
 		// Determine whether it is possible to obtain a straight from the
@@ -679,13 +385,9 @@ public class HandOfCards {
 	// or straight
 	// then discard the two lowest value non-pair cards.
 	private int getOnePairDiscardProbability(int cardPosition) {
-		String suitFrequency = countSuitFrequency();
-		
-		if (suitFrequency.charAt(1) == 4 && hand.get(cardPosition).getSuit() == suitFrequency.charAt(0)) {
-			return 100;
-		}
-		else if (suitFrequency.charAt(1) == 4) {
-			return 0;
+		// Four to a flush: break the pair and draw to the flush.
+		if (suitCounts[flushSuit] == HAND_SIZE - 1) {
+			return isOffSuit(cardPosition) ? 100 : 0;
 		}
 		else {
 			// If the one pair is not close to a straight/flush then discard the two lowest non-pair cards.
@@ -801,23 +503,20 @@ public class HandOfCards {
 	}
 
 	public int getDiscardProbability(int cardPosition) {
-		if (isHighHand()) {
+		switch (category) {
+		case HIGH_HAND:
 			return getHighHandDiscardProbability(cardPosition);
-		}
 
-		else if (isOnePair()) {
+		case ONE_PAIR:
 			return getOnePairDiscardProbability(cardPosition);
-		}
 
-		else if (isTwoPair()) {
+		case TWO_PAIR:
 			return getTwoPairDiscardProbability(cardPosition);
-		}
 
-		else if (isThreeOfAKind()) {
+		case THREE_OF_A_KIND:
 			return getThreeOfAKindDiscardProbability(cardPosition);
-		}
 
-		else if (isStraight()) {
+		case STRAIGHT:
 			// The probability of a player holding a straight in 5 card draw is
 			// 0.76%.
 			// The odds of two player receiving this hand in a single turn is
@@ -825,9 +524,8 @@ public class HandOfCards {
 			// Therefore I think it best that the bot/player discards nothing.
 
 			return 0;
-		}
 
-		else if (isFlush()) {
+		case FLUSH:
 			// The probability of a player holding a flush in 5 card draw is
 			// 0.367%.
 			// The odds of two player receiving this hand in a single turn is
@@ -835,9 +533,8 @@ public class HandOfCards {
 			// Therefore I think it best that the bot/player discards nothing.
 
 			return 0;
-		}
 
-		else if (isFullHouse()) {
+		case FULL_HOUSE:
 			// The probability of a player holding a full house in 5 card draw
 			// is 0.17%.
 			// The odds of two player receiving this hand in a single turn is
@@ -845,13 +542,11 @@ public class HandOfCards {
 			// Therefore I think it best that the bot/player discards nothing.
 
 			return 0;
-		}
 
-		else if (isFourOfAKind()) {
+		case FOUR_OF_A_KIND:
 			return getFourOfAKindDiscardProbability(cardPosition);
-		}
 
-		else if (isStraightFlush()) {
+		case STRAIGHT_FLUSH:
 			// The probability of a player holding a straight flush in 5 card
 			// draw is 0.0256%.
 			// The odds of two player receiving this hand in a single turn is
@@ -859,52 +554,115 @@ public class HandOfCards {
 			// Therefore I think it best that the bot/player discards nothing.
 
 			return 0;
-		}
 
-		else if (isRoyalFlush()) {
+		case ROYAL_FLUSH:
 			// There is no better hand than this so obviously discard no cards.
 
 			return 0;
-		}
 
-		else
+		default:
 			return 0;
+		}
 	}
 	
-	// Return the number of cards discarded at the beginning of a round. 
-	// This function also handles discarding and adding new cards.
+	// The card at the given position, highest first.
+	public PlayingCard getCard(int position) {
+		return hand.get(position);
+	}
+
+	// The cards in the hand as a CardSet mask. Unlike getCardSet() this
+	// allocates nothing.
+	public long getCardMask() {
+		return cardMask;
+	}
+
+	/*
+	 * Return the number of cards discarded at the beginning of a round.
+	 * This function also handles discarding and adding new cards. The cards
+	 * thrown away are the (at most three) that DiscardEvaluator works out give
+	 * the best chance of ending with a winning hand, looked up in the discard
+	 * table if one has been set. With a table set nothing is allocated.
+	 */
 	public int discard() {
-		int cardsToDiscard = 0;
-		ArrayList<Integer> cardIndicesToDiscard = new ArrayList<Integer>();
-
-		// Find which cards have a discardProbability greater than 1. 
-		// Add their positions in the hand to an ArrayList cardIndicesToDiscard.
-		// Start from the highest index in the ArrayList to avoid out of bounds exceptions.
-		for (int i = HAND_SIZE - 1; i >= 0; i--) {
-			if (cardsToDiscard == 3)
-				break;
-			if (getDiscardProbability(i) > 0) {
-				cardIndicesToDiscard.add(i);
-				cardsToDiscard++;
-			}
+		return Integer.bitCount(discard(DiscardStrategy.BEST));
+	}
+
+	/*
+	 * Discard as the strategy decides and return the discard mask. This is
+	 * the whole of discard() and PokerPlayer.discard(), so it is where the
+	 * Metrics.DISCARD latency is measured: the decision and the replacement
+	 * cards together. A discard(int) on its own, with the decision made
+	 * elsewhere, is counted but not timed.
+	 */
+	int discard(DiscardStrategy strategy) {
+		long start = 0;
+		if (Metrics.ENABLED && (++metricsCalls & Metrics.SAMPLE_MASK) == 0)
+			start = System.nanoTime();
+
+		int discardMask = strategy.getDiscard(this);
+		discard(discardMask);
+		if (start != 0)
+			Metrics.DISCARD.record(System.nanoTime() - start);
+		return discardMask;
+	}
+
+	// The discard (bit i is the card at position i) which discard() makes.
+	public int getBestDiscard() {
+		if (discardTable != null)
+			return getDiscard(discardTable);
+
+		for (int i = 0; i < HAND_SIZE; i++) {
+			cardIndices[i] = hand.get(i).getIndex();
 		}
-		
-		// Return each card marked in the cardIndicesToDiscard ArrayList to the deck.
-		for (int i = 0; i < cardsToDiscard; i++) {
-			PlayingCard p = hand.get(cardIndicesToDiscard.get(i));
-			hand.remove(p);
-			deck.returnCard(p);
+		return DiscardEvaluator.evaluate(cardIndices).getBestDiscard(DiscardEvaluator.MAX_DISCARDS);
+	}
+
+	// Look the discard for this hand up in the given table. Nothing is
+	// allocated.
+	public int getDiscard(DiscardTable table) {
+		for (int i = 0; i < HAND_SIZE; i++) {
+			cardIndices[i] = hand.get(i).getIndex();
 		}
-		
-		// Deal a new card to the hand.
-		for (int i = 0; i < cardsToDiscard; i++) {
-			hand.add(deck.dealNext());
+		return table.getDiscard(cardIndices, permutation);
+	}
+
+	/*
+	 * The discard the hand used to make from getDiscardProbability(): up to
+	 * three cards whose discard probability is more than 0, lowest cards
+	 * first. Kept so other ways of discarding can be compared with it.
+	 */
+	public int getHeuristicDiscard() {
+		int discardMask = 0;
+		for (int i = HAND_SIZE - 1; i >= 0 && Integer.bitCount(discardMask) < DiscardEvaluator.MAX_DISCARDS; i--) {
+			if (getDiscardProbability(i) > 0)
+				discardMask |= 1 << i;
+		}
+		return discardMask;
+	}
+
+	// Replace the cards at the positions set in discardMask (bit i is the card
+	// at position i) and return how many were replaced.
+	public int discard(int discardMask) {
+		HandCategory dealt = category;
+		// Deal each new card straight into the place of the card it replaces.
+		for (int i = 0; i < HAND_SIZE; i++) {
+			if ((discardMask & (1 << i)) != 0) {
+				deck.returnCard(hand.get(i));
+				hand.set(i, deck.dealNext());
+			}
 		}
-		
+
 		// Resort the hand after adding new cards.
 		sort();
-		
-		return cardsToDiscard;
+
+		if (Metrics.ENABLED) {
+			pendingDiscards[HandCounters.getDiscardKey(dealt, category, Integer.bitCount(discardMask))]++;
+			if (++pendingDiscardCount == Metrics.SAMPLE_RATE) {
+				Metrics.HANDS.addDiscards(pendingDiscards);
+				pendingDiscardCount = 0;
+			}
+		}
+		return Integer.bitCount(discardMask);
 	}
 
 	// Returns a string with each card in the hand separated by a space.
@@ -919,54 +677,21 @@ public class HandOfCards {
 	public static void main(String[] args) {
 		DeckOfCards d = new DeckOfCards();
 
-		// Sort the cards into separate lists based on suit.
+		// Sort the cards into separate lists based on suit, each ordered from
+		// the lowest to the highest game value card. The shared card table is
+		// already in this order.
 		ArrayList<PlayingCard> hearts = new ArrayList<>();
 		ArrayList<PlayingCard> spades = new ArrayList<>();
 		ArrayList<PlayingCard> diamonds = new ArrayList<>();
 		ArrayList<PlayingCard> clubs = new ArrayList<>();
-		for (int i = 0; i < DeckOfCards.DECK_SIZE; i++) {
-			PlayingCard card = d.dealNext();
-			switch (card.getSuit()) {
-			case PlayingCard.HEARTS:
-				hearts.add(card);
-				break;
-			case PlayingCard.SPADES:
-				spades.add(card);
-				break;
-			case PlayingCard.DIAMONDS:
-				diamonds.add(card);
-				break;
-			case PlayingCard.CLUBS:
-				clubs.add(card);
-				break;
-			}
+		for (int i = 0; i < DeckOfCards.NUMBER_OF_RANKS; i++) {
+			hearts.add(PlayingCard.get(PlayingCard.getSuitIndex(PlayingCard.HEARTS) * DeckOfCards.NUMBER_OF_RANKS + i));
+			spades.add(PlayingCard.get(PlayingCard.getSuitIndex(PlayingCard.SPADES) * DeckOfCards.NUMBER_OF_RANKS + i));
+			diamonds.add(
+					PlayingCard.get(PlayingCard.getSuitIndex(PlayingCard.DIAMONDS) * DeckOfCards.NUMBER_OF_RANKS + i));
+			clubs.add(PlayingCard.get(PlayingCard.getSuitIndex(PlayingCard.CLUBS) * DeckOfCards.NUMBER_OF_RANKS + i));
 		}
 
-		// Order these suit lists from lowest to highest game value card.
-		Collections.sort(hearts, new Comparator<PlayingCard>() {
-			public int compare(PlayingCard c1, PlayingCard c2) {
-				return c1.getGameValue() - c2.getGameValue();
-			}
-		});
-
-		Collections.sort(spades, new Comparator<PlayingCard>() {
-			public int compare(PlayingCard c1, PlayingCard c2) {
-				return c1.getGameValue() - c2.getGameValue();
-			}
-		});
-
-		Collections.sort(diamonds, new Comparator<PlayingCard>() {
-			public int compare(PlayingCard c1, PlayingCard c2) {
-				return c1.getGameValue() - c2.getGameValue();
-			}
-		});
-
-		Collections.sort(clubs, new Comparator<PlayingCard>() {
-			public int compare(PlayingCard c1, PlayingCard c2) {
-				return c1.getGameValue() - c2.getGameValue();
-			}
-		});
-
 		/*
 		 * Create hands of cards from these lists that correspond to real poker
 		 * hands. Store these hands in their own lists.
@@ -1248,6 +973,7 @@ public class HandOfCards {
 		hand1.hand.add(hearts.get(2));
 		hand1.hand.add(clubs.get(1));
 		hand1.hand.add(diamonds.get(0));
+		hand1.sort();
 		System.out.println("Hand1: " + hand1.toString() + "\nValue:" + hand1.getGameValue() + "\n");
 
 		// hand2: AS QH JH 10C 9D
@@ -1258,6 +984,7 @@ public class HandOfCards {
 		hand2.hand.add(hearts.get(9));
 		hand2.hand.add(clubs.get(8));
 		hand2.hand.add(diamonds.get(7));
+		hand2.sort();
 		System.out.println("Hand2: " + hand2.toString() + "\nValue:" + hand2.getGameValue() + "\n");
 
 		// hand3: AS KH 8H 3C 2D
@@ -1268,6 +995,7 @@ public class HandOfCards {
 		hand3.hand.add(hearts.get(6));
 		hand3.hand.add(clubs.get(1));
 		hand3.hand.add(diamonds.get(0));
+		hand3.sort();
 		System.out.println("Hand3: " + hand3.toString() + "\nValue:" + hand3.getGameValue() + "\n");
 
 		// Test hands with one pair. Hand5 should be the best hand, followed by
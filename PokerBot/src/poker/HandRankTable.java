@@ -0,0 +1,235 @@
+package poker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/*
+ * The value of every one of the 2,598,960 five card hands, worked out once and
+ * stored in a file. The file is memory mapped read only, so any number of bot
+ * JVMs on the same machine share one copy of it through the page cache and a
+ * lookup is a single read from the mapping.
+ *
+ * Hands are numbered by their combinatorial (colex) index: with the card
+ * indices sorted so that c0 < c1 < c2 < c3 < c4 the index is
+ * C(c0,1) + C(c1,2) + C(c2,3) + C(c3,4) + C(c4,5). All hands whose highest card
+ * is c4 sit together in the range [C(c4,5), C(c4+1,5)).
+ *
+ * File layout (big endian):
+ *   int    MAGIC
+ *   int    number of distinct hand values (N)
+ *   int[N] the distinct hand values, lowest first
+ *   short  for each hand index, the position of its value in the list above
+ * There are only 7,462 distinct values so storing a short per hand keeps the
+ * file at about 5MB instead of 10MB.
+ *
+ * HandOfCards.setHandRankTable() makes hands read their values from a table.
+ * Nothing sets one by default: HandEvaluator's tables fit in the CPU cache,
+ * and scoring a hand with it is at least as fast as a read from the mapping
+ * (main() times both).
+ */
+public class HandRankTable {
+
+	public static void main(String[] args) throws IOException {
+		String fileName = args.length > 0 ? args[0]
+				: Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_FILE_NAME).toString();
+
+		long start = System.nanoTime();
+		generate(fileName);
+		System.out.println("Wrote " + fileName + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+
+		HandRankTable table = load(fileName);
+		System.out.println("Distinct values: " + table.values.length);
+
+		// Every hand must match the evaluator, whichever way it is looked up.
+		boolean matches = true;
+		int handIndex = 0;
+		for (int c4 = 0; c4 < DeckOfCards.DECK_SIZE; c4++)
+			for (int c3 = 0; c3 < c4; c3++)
+				for (int c2 = 0; c2 < c3; c2++)
+					for (int c1 = 0; c1 < c2; c1++)
+						for (int c0 = 0; c0 < c1; c0++) {
+							int expected = HandEvaluator.evaluate(c0, c1, c2, c3, c4);
+							long cards = CardSet.bit(c0) | CardSet.bit(c1) | CardSet.bit(c2) | CardSet.bit(c3)
+									| CardSet.bit(c4);
+							if (getHandIndex(cards) != handIndex || table.getValue(handIndex) != expected
+									|| table.getValue(c4, c2, c0, c3, c1) != expected)
+								matches = false;
+							handIndex++;
+						}
+		System.out.println("Table lookup" + (matches && handIndex == NUMBER_OF_HANDS ? " - Success" : " - Failed"));
+
+		// Hands read their values from the table once it is set, and get the
+		// same values and categories as from HandEvaluator.
+		DeckOfCards deck = new DeckOfCards(7L);
+		HandOfCards hand = new HandOfCards(deck);
+		HandOfCards.setHandRankTable(table);
+		boolean same = true;
+		for (int i = 0; i < 100000; i++) {
+			deck.reset();
+			hand.redeal();
+			int expected = HandEvaluator.evaluate(hand.getCard(0), hand.getCard(1), hand.getCard(2),
+					hand.getCard(3), hand.getCard(4));
+			if (hand.getGameValue() != expected || hand.getCategory() != HandCategory.fromGameValue(expected))
+				same = false;
+		}
+		System.out.println("Hands use the table" + (same ? " - Success" : " - Failed"));
+
+		// Compare the time to deal and score a hand both ways.
+		for (int run = 0; run < 3; run++) {
+			for (HandRankTable t : new HandRankTable[] { null, table }) {
+				HandOfCards.setHandRankTable(t);
+				long dealStart = System.nanoTime();
+				for (int i = 0; i < 1000000; i++) {
+					deck.reset();
+					hand.redeal();
+				}
+				System.out.println((t == null ? "HandEvaluator: " : "HandRankTable: ")
+						+ (System.nanoTime() - dealStart) / 1000000 + "ns per hand");
+			}
+		}
+		HandOfCards.setHandRankTable(null);
+
+		// Writing the table again must not disturb a JVM which has it mapped.
+		generate(fileName);
+		HandRankTable again = load(fileName);
+		boolean unchanged = true;
+		for (int i = 0; i < NUMBER_OF_HANDS; i++) {
+			if (table.getValue(i) != again.getValue(i))
+				unchanged = false;
+		}
+		System.out.println("Regenerate while mapped" + (unchanged ? " - Success" : " - Failed"));
+
+		// A table cut short, say by a crash while it was copied, is refused.
+		Path path = Paths.get(fileName);
+		Path truncated = Files.createTempFile("handranks", ".dat");
+		try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(truncated, StandardOpenOption.WRITE)) {
+			out.transferFrom(in, 0, in.size() / 2);
+		}
+		boolean refused = false;
+		try {
+			load(truncated.toString());
+		} catch (IOException e) {
+			refused = true;
+		}
+		Files.delete(truncated);
+		System.out.println("Truncated table refused" + (refused ? " - Success" : " - Failed"));
+	}
+
+	public static final int NUMBER_OF_HANDS = 2598960;
+	public static final String DEFAULT_FILE_NAME = "handranks.dat";
+	private static final int MAGIC = 0x504B5254;
+
+	// BINOMIAL[k][n] is n choose k.
+	private static final int[][] BINOMIAL = new int[HandOfCards.HAND_SIZE + 1][DeckOfCards.DECK_SIZE + 1];
+
+	static {
+		for (int n = 0; n <= DeckOfCards.DECK_SIZE; n++) {
+			BINOMIAL[0][n] = 1;
+			for (int k = 1; k <= HandOfCards.HAND_SIZE && k <= n; k++) {
+				BINOMIAL[k][n] = BINOMIAL[k - 1][n - 1] + BINOMIAL[k][n - 1];
+			}
+		}
+	}
+
+	private final int[] values;
+	private final MappedByteBuffer valueIndices;
+	private final int valueIndicesOffset;
+
+	private HandRankTable(int[] values, MappedByteBuffer valueIndices, int valueIndicesOffset) {
+		this.values = values;
+		this.valueIndices = valueIndices;
+		this.valueIndicesOffset = valueIndicesOffset;
+	}
+
+	// Map a table previously written by generate().
+	public static HandRankTable load(String fileName) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			long size = channel.size();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (size < 8 || buffer.getInt(0) != MAGIC)
+				throw new IOException(fileName + " is not a hand rank table");
+			// A table cut short (or with trailing bytes) would give wrong values,
+			// or throw from getValue(), long after loading.
+			int numberOfValues = buffer.getInt(4);
+			if (numberOfValues <= 0 || numberOfValues > NUMBER_OF_HANDS
+					|| size != 8 + 4L * numberOfValues + 2L * NUMBER_OF_HANDS)
+				throw new IOException(fileName + " is " + size + " bytes, the wrong size for a hand rank table");
+
+			int[] values = new int[numberOfValues];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = buffer.getInt(8 + 4 * i);
+			}
+			return new HandRankTable(values, buffer, 8 + 4 * values.length);
+		}
+	}
+
+	// Score every hand (in parallel, one task per highest card) and write the
+	// table to the given file.
+	public static void generate(String fileName) throws IOException {
+		final int[] handValues = new int[NUMBER_OF_HANDS];
+		IntStream.range(HandOfCards.HAND_SIZE - 1, DeckOfCards.DECK_SIZE).parallel().forEach(c4 -> {
+			int handIndex = BINOMIAL[5][c4];
+			for (int c3 = 0; c3 < c4; c3++)
+				for (int c2 = 0; c2 < c3; c2++)
+					for (int c1 = 0; c1 < c2; c1++)
+						for (int c0 = 0; c0 < c1; c0++)
+							handValues[handIndex++] = HandEvaluator.evaluate(c0, c1, c2, c3, c4);
+		});
+
+		final int[] values = Arrays.stream(handValues).parallel().distinct().sorted().toArray();
+		short[] valueIndices = new short[NUMBER_OF_HANDS];
+		IntStream.range(0, NUMBER_OF_HANDS).parallel()
+				.forEach(i -> valueIndices[i] = (short) Arrays.binarySearch(values, handValues[i]));
+
+		ByteBuffer buffer = ByteBuffer.allocate(8 + 4 * values.length + 2 * NUMBER_OF_HANDS);
+		buffer.putInt(MAGIC);
+		buffer.putInt(values.length);
+		buffer.asIntBuffer().put(values);
+		buffer.position(8 + 4 * values.length);
+		buffer.asShortBuffer().put(valueIndices);
+		buffer.rewind();
+
+		TableFiles.writeAtomically(buffer, fileName);
+	}
+
+	// The colex index of a five card CardSet mask. The lowest set bit is the
+	// lowest card, so the cards come out already sorted.
+	public static int getHandIndex(long cards) {
+		int c0 = Long.numberOfTrailingZeros(cards);
+		cards &= cards - 1;
+		int c1 = Long.numberOfTrailingZeros(cards);
+		cards &= cards - 1;
+		int c2 = Long.numberOfTrailingZeros(cards);
+		cards &= cards - 1;
+		int c3 = Long.numberOfTrailingZeros(cards);
+		cards &= cards - 1;
+		int c4 = Long.numberOfTrailingZeros(cards);
+		return BINOMIAL[1][c0] + BINOMIAL[2][c1] + BINOMIAL[3][c2] + BINOMIAL[4][c3] + BINOMIAL[5][c4];
+	}
+
+	// The colex index of five card indices given in any order.
+	public static int getHandIndex(int c0, int c1, int c2, int c3, int c4) {
+		return getHandIndex(CardSet.bit(c0) | CardSet.bit(c1) | CardSet.bit(c2) | CardSet.bit(c3) | CardSet.bit(c4));
+	}
+
+	public int getValue(int handIndex) {
+		return values[valueIndices.getShort(valueIndicesOffset + 2 * handIndex)];
+	}
+
+	public int getValue(long cards) {
+		return getValue(getHandIndex(cards));
+	}
+
+	public int getValue(int c0, int c1, int c2, int c3, int c4) {
+		return getValue(getHandIndex(c0, c1, c2, c3, c4));
+	}
+}
@@ -0,0 +1,89 @@
+package poker;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Counts how long something took in buckets of powers of two: bucket i
+ * holds times from 2^(i-1) up to 2^i nanoseconds (bucket 0 holds 0). Every
+ * bucket is a LongAdder, so threads recording at the same time never lock
+ * or wait for each other, and reading the histogram does not stop them.
+ * Percentiles are given as the top of the bucket they fall in, so they are
+ * never more than twice the real value.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+	// One bucket for 0 and one for each bit of a long.
+	public static final int NUMBER_OF_BUCKETS = Long.SIZE + 1;
+
+	public LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long nanos) {
+		buckets[Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, nanos))].increment();
+		total.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	public double getMeanNanos() {
+		return (double) total.sum() / getCount();
+	}
+
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	public long getMedianNanos() {
+		return getPercentile(0.5);
+	}
+
+	public long get99thPercentileNanos() {
+		return getPercentile(0.99);
+	}
+
+	// The time (the top of its bucket) below which the given share of the
+	// recorded times fall.
+	public long getPercentile(double share) {
+		long[] counts = getBuckets();
+		long count = 0;
+		for (long bucket : counts) {
+			count += bucket;
+		}
+
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen > 0 && seen >= share * count)
+				return i == 0 ? 0 : Math.min(1L << i, getMaxNanos());
+		}
+		return 0;
+	}
+
+	public long[] getBuckets() {
+		long[] counts = new long[NUMBER_OF_BUCKETS];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = buckets[i].sum();
+		}
+		return counts;
+	}
+
+	public String toString() {
+		return String.format("%d samples, mean %.0fns, median %dns, 99%% %dns, max %dns", getCount(), getMeanNanos(),
+				getMedianNanos(), get99thPercentileNanos(), getMaxNanos());
+	}
+
+	private final LongAdder[] buckets = new LongAdder[NUMBER_OF_BUCKETS];
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+}
@@ -0,0 +1,17 @@
+package poker;
+
+// The JMX view of a LatencyHistogram. All times are in nanoseconds.
+public interface LatencyHistogramMBean {
+
+	long getCount();
+
+	double getMeanNanos();
+
+	long getMaxNanos();
+
+	long getMedianNanos();
+
+	long get99thPercentileNanos();
+
+	long[] getBuckets();
+}
@@ -0,0 +1,218 @@
+package poker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+ * Counters and latency histograms for the hot paths: dealing, evaluating
+ * and discarding. They are off unless the JVM is started with
+ * -Dpoker.metrics=true. ENABLED is a static final, so when it is false the
+ * JIT compiler removes every instrumented branch and the metrics cost
+ * nothing at all.
+ *
+ * When on, every deck and hand counts what it does in plain fields of its
+ * own and adds them to the shared counters every SAMPLE_RATE calls, so the
+ * counters cost no more than an increment but lag a little behind (see
+ * HandCounters). Reading the clock costs more than dealing a card, so the
+ * histograms only time one call in SAMPLE_RATE: every hand counts its own
+ * calls, and every deck times one reset in SAMPLE_RATE and the shuffle and
+ * deal which follow it. Everything is registered as JMX MBeans under the
+ * domain "poker".
+ */
+public final class Metrics {
+
+	/*
+	 * With no arguments, play rounds in new JVMs, some with metrics and some
+	 * without, and compare their speed. With the name of a DiscardTable file
+	 * as the argument, play slices of rounds in this JVM when asked (see
+	 * playRounds()) and, if metrics are on, print them as read through JMX
+	 * at the end.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException, JMException {
+		if (args.length > 0) {
+			playRounds(args[0]);
+			if (ENABLED) {
+				System.out.println(HANDS);
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				for (ObjectName name : server.queryNames(new ObjectName(DOMAIN + ":type=Latency,*"), null)) {
+					System.out.println(name.getKeyProperty("name") + ": " + server.getAttribute(name, "Count")
+							+ " samples, median " + server.getAttribute(name, "MedianNanos") + "ns, 99% "
+							+ server.getAttribute(name, "99thPercentileNanos") + "ns");
+				}
+				long[] discards = (long[]) server.getAttribute(new ObjectName(DOMAIN + ":type=Hands"), "DiscardCounts");
+				System.out.println("Discard counts over JMX: " + Arrays.toString(discards));
+			}
+			return;
+		}
+
+		/*
+		 * The speed of a small VM drifts by 20% or more from one second to
+		 * the next, far more than the overhead being measured, so comparing
+		 * separate runs says little. Instead a JVM with metrics and one
+		 * without are kept running side by side and take turns playing a
+		 * short slice of rounds, and each slice with metrics is compared with
+		 * the slice without next to it. Two JVMs running the same code still
+		 * differ by a percent or two, depending on how the JIT compiler
+		 * treated each, so this is done with several pairs of JVMs. The
+		 * overhead is the median over all the pairs of slices.
+		 */
+		File file = File.createTempFile("discards", ".dat");
+		file.deleteOnExit();
+		DiscardTable.generate(file.getPath());
+		double[] ratios = new double[JVM_PAIRS * SLICE_PAIRS];
+		long[] offRates = new long[ratios.length];
+		long[] onRates = new long[ratios.length];
+		String onReport = "";
+		for (int j = 0; j < JVM_PAIRS; j++) {
+			Child off = new Child(false, file.getPath());
+			Child on = new Child(true, file.getPath());
+			for (int i = j * SLICE_PAIRS; i < (j + 1) * SLICE_PAIRS; i++) {
+				// Take turns going first, so neither always gets the second
+				// half of a drift.
+				if (i % 2 == 0) {
+					offRates[i] = off.playSlice();
+					onRates[i] = on.playSlice();
+				} else {
+					onRates[i] = on.playSlice();
+					offRates[i] = off.playSlice();
+				}
+				ratios[i] = (double) onRates[i] / offRates[i];
+			}
+			off.finish();
+			onReport = on.finish();
+		}
+		System.out.println(onReport);
+
+		Arrays.sort(ratios);
+		Arrays.sort(offRates);
+		Arrays.sort(onRates);
+		int median = ratios.length / 2;
+		double overhead = 100.0 * (1 - ratios[median]);
+		System.out.println("Rounds per second (median of " + ratios.length + " slices in " + JVM_PAIRS
+				+ " pairs of JVMs): " + offRates[median] + " without metrics, " + onRates[median] + " with metrics");
+		System.out.println(String.format("Overhead %.2f%%", overhead) + (overhead < 2 ? " - Success" : " - Failed"));
+	}
+
+	/*
+	 * Warm up, then play a slice of rounds for every line read from
+	 * System.in and print the rounds per second of each, until System.in is
+	 * closed.
+	 */
+	private static void playRounds(String discardTable) throws IOException {
+		HandOfCards.setDiscardTable(DiscardTable.load(discardTable));
+
+		PokerPlayer player = new PokerPlayer(new DeckOfCards(47L));
+		long checksum = 0;
+		for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+			checksum += player.playRound();
+		}
+		BufferedReader commands = new BufferedReader(new InputStreamReader(System.in));
+		while (commands.readLine() != null) {
+			long start = System.nanoTime();
+			for (int i = 0; i < SLICE_ROUNDS; i++) {
+				checksum += player.playRound();
+			}
+			System.out.println((long) (SLICE_ROUNDS * 1e9 / (System.nanoTime() - start)));
+		}
+		System.out.println("Checksum " + checksum);
+	}
+
+	private static final int WARM_UP_ROUNDS = 3000000;
+	// About a twentieth of a second each.
+	private static final int SLICE_ROUNDS = 50000;
+	private static final int SLICE_PAIRS = 51;
+	private static final int JVM_PAIRS = 5;
+
+	// A JVM playing slices of rounds when told to.
+	private static final class Child {
+
+		Child(boolean metrics, String discardTable) throws IOException {
+			String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+			process = new ProcessBuilder(java, "-Dpoker.metrics=" + metrics, "-cp",
+					System.getProperty("java.class.path"), Metrics.class.getName(), discardTable)
+							.redirectErrorStream(true).start();
+			commands = new PrintStream(process.getOutputStream(), true);
+			output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		}
+
+		// Play one slice and return its rounds per second.
+		long playSlice() throws IOException {
+			commands.println();
+			String line = output.readLine();
+			try {
+				return Long.parseLong(line);
+			} catch (NumberFormatException e) {
+				throw new IOException("Unexpected output from the child JVM: " + line, e);
+			}
+		}
+
+		// Stop asking for slices and return everything else it printed.
+		String finish() throws IOException, InterruptedException {
+			commands.close();
+			StringBuilder rest = new StringBuilder();
+			for (String line = output.readLine(); line != null; line = output.readLine()) {
+				rest.append(line).append('\n');
+			}
+			output.close();
+			process.waitFor();
+			return rest.toString();
+		}
+
+		private final Process process;
+		private final PrintStream commands;
+		private final BufferedReader output;
+	}
+
+	public static final boolean ENABLED = Boolean.getBoolean("poker.metrics");
+
+	// Time one call in SAMPLE_RATE (a power of two). A pair of clock reads
+	// costs about as much as replacing the cards of a discard, so timing one
+	// call in 64 still showed up in the rounds per second. One in 1024 does
+	// not. A timed call reads the clock around the same code as any other
+	// call: a second, timed copy of the work made the JIT compiler stop
+	// inlining the work into its callers.
+	public static final int SAMPLE_RATE = 1024;
+	static final int SAMPLE_MASK = SAMPLE_RATE - 1;
+
+	public static final LatencyHistogram RESET = new LatencyHistogram();
+	public static final LatencyHistogram SHUFFLE = new LatencyHistogram();
+	public static final LatencyHistogram DEAL = new LatencyHistogram();
+	public static final LatencyHistogram EVALUATE = new LatencyHistogram();
+	// The discard decision and the replacement cards together, see
+	// HandOfCards.discard(DiscardStrategy).
+	public static final LatencyHistogram DISCARD = new LatencyHistogram();
+	public static final HandCounters HANDS = new HandCounters();
+
+	private static final String DOMAIN = "poker";
+
+	static {
+		if (ENABLED) {
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				server.registerMBean(HANDS, new ObjectName(DOMAIN + ":type=Hands"));
+				register(server, "DeckOfCards.reset", RESET);
+				register(server, "DeckOfCards.shuffle", SHUFFLE);
+				register(server, "DeckOfCards.dealNext", DEAL);
+				register(server, "HandOfCards.evaluate", EVALUATE);
+				register(server, "HandOfCards.discard", DISCARD);
+			} catch (JMException e) {
+				throw new IllegalStateException("Could not register the metrics", e);
+			}
+		}
+	}
+
+	private static void register(MBeanServer server, String name, LatencyHistogram histogram) throws JMException {
+		server.registerMBean(histogram, new ObjectName(DOMAIN + ":type=Latency,name=" + name));
+	}
+
+	private Metrics() {
+	}
+}
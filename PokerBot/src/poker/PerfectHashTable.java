@@ -0,0 +1,124 @@
+package poker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * A read only int to int map for a fixed set of keys, built so that every key
+ * has a slot of its own (a "hash and displace" perfect hash). A key is hashed
+ * into a small bucket and a slot, and each bucket has a displacement that was
+ * chosen when the table was built so that none of its keys collide with keys
+ * placed before them. A lookup is always two multiplies and two array reads,
+ * with no probing loop and no branches, which keeps the evaluators' inner
+ * loops straight-line.
+ *
+ * Looking up a key that was not in the table returns the value of some other
+ * key, so it is only for callers who know their keys are valid.
+ */
+public class PerfectHashTable {
+
+	private static final int MULTIPLIER = 0x9E3779B1;
+
+	private final int seed;
+	private final int bucketShift;
+	private final int slotShift;
+	private final int slotMask;
+	private final int[] displacements;
+	private final int[] values;
+
+	public PerfectHashTable(int[] keys, int[] values) {
+		// About two keys per bucket and a little over twice as many slots as
+		// keys makes a displacement easy to find for every bucket.
+		int bucketBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(keys.length / 2));
+		int slotBits = Math.max(1, 33 - Integer.numberOfLeadingZeros(keys.length));
+
+		int[] placed = null;
+		int triedSeed = 0;
+		int[] bucketDisplacements = new int[1 << bucketBits];
+		while (placed == null) {
+			triedSeed++;
+			placed = place(keys, triedSeed, bucketBits, slotBits, bucketDisplacements);
+		}
+
+		this.seed = triedSeed;
+		this.bucketShift = 32 - bucketBits;
+		this.slotShift = 32 - slotBits;
+		this.slotMask = (1 << slotBits) - 1;
+		this.displacements = bucketDisplacements;
+		this.values = new int[1 << slotBits];
+		for (int i = 0; i < keys.length; i++) {
+			this.values[placed[i]] = values[i];
+		}
+	}
+
+	/*
+	 * Find a displacement for every bucket, largest buckets first. Returns the
+	 * slot of each key, or null if two keys hash identically with this seed
+	 * (they could never be separated) so another seed must be tried.
+	 */
+	private static int[] place(int[] keys, int seed, int bucketBits, int slotBits, int[] displacements) {
+		List<List<Integer>> buckets = new ArrayList<List<Integer>>();
+		for (int i = 0; i < (1 << bucketBits); i++) {
+			buckets.add(new ArrayList<Integer>());
+		}
+		for (int i = 0; i < keys.length; i++) {
+			buckets.get(bucketOf(keys[i], seed, 32 - bucketBits)).add(i);
+		}
+
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < buckets.size(); i++) {
+			order.add(i);
+		}
+		Collections.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+		int slotMask = (1 << slotBits) - 1;
+		boolean[] used = new boolean[1 << slotBits];
+		int[] slots = new int[keys.length];
+		Arrays.fill(displacements, 0);
+
+		for (int bucket : order) {
+			List<Integer> members = buckets.get(bucket);
+			if (members.isEmpty())
+				break;
+
+			boolean found = false;
+			for (int displacement = 0; displacement <= slotMask && !found; displacement++) {
+				found = true;
+				for (int j = 0; j < members.size() && found; j++) {
+					int slot = (slotOf(keys[members.get(j)], seed, 32 - slotBits) + displacement) & slotMask;
+					if (used[slot])
+						found = false;
+					for (int k = 0; k < j && found; k++) {
+						if (slots[members.get(k)] == slot)
+							found = false;
+					}
+					slots[members.get(j)] = slot;
+				}
+				if (found) {
+					displacements[bucket] = displacement;
+					for (int member : members) {
+						used[slots[member]] = true;
+					}
+				}
+			}
+			if (!found)
+				return null;
+		}
+		return slots;
+	}
+
+	private static int bucketOf(int key, int seed, int bucketShift) {
+		return ((key ^ seed) * MULTIPLIER) >>> bucketShift;
+	}
+
+	private static int slotOf(int key, int seed, int slotShift) {
+		return (((key ^ seed) * MULTIPLIER) * MULTIPLIER) >>> slotShift;
+	}
+
+	public int get(int key) {
+		int hash = (key ^ seed) * MULTIPLIER;
+		return values[((hash * MULTIPLIER >>> slotShift) + displacements[hash >>> bucketShift]) & slotMask];
+	}
+}
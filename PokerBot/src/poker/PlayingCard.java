@@ -1,33 +1,35 @@
 package poker;
 
-import java.util.ArrayList;
-
 public class PlayingCard {
 
 	public static void main(String[] args) {
-		ArrayList<PlayingCard> deck = new ArrayList<PlayingCard>();
-
-		char[] suits = { PlayingCard.HEARTS, PlayingCard.DIAMONDS, PlayingCard.CLUBS, PlayingCard.SPADES };
-
-		int suitTrack = 0;
-
-		// Create each card in the deck and add them to the deck[].
-		for (int i = 0; i < DeckOfCards.NUMBER_OF_SUITS; i++) {
-			char currentSuit = suits[suitTrack++];
-			for (int j = TWO_GAME_VALUE; j <= TEN_GAME_VALUE; j++) {
-				deck.add(new PlayingCard("" + j, currentSuit, j, j));
-			}
-			deck.add(new PlayingCard("J", currentSuit, JACK_GAME_VALUE, JACK_GAME_VALUE));
-			deck.add(new PlayingCard("Q", currentSuit, QUEEN_GAME_VALUE, QUEEN_GAME_VALUE));
-			deck.add(new PlayingCard("K", currentSuit, KING_GAME_VALUE, KING_GAME_VALUE));
-			deck.add(new PlayingCard("A", currentSuit, 1, ACE_GAME_VALUE));
+		// Print each card in the deck, in the order a new deck is created in.
+		for (int i = 0; i < DeckOfCards.DECK_SIZE; i++) {
+			System.out.println(get(i).toString());
 		}
 
+		// The table must hand out the same object every time.
+		PlayingCard[] first = new PlayingCard[DeckOfCards.DECK_SIZE];
+		for (int i = 0; i < DeckOfCards.DECK_SIZE; i++) {
+			first[i] = get(i);
+		}
+		boolean shared = true;
 		for (int i = 0; i < DeckOfCards.DECK_SIZE; i++) {
-			System.out.println(deck.get(i).toString());
+			if (get(i) != first[i] || get(i).getIndex() != i)
+				shared = false;
 		}
+		System.out.println("\nShared cards" + (shared ? " - Success" : " - Failed"));
+
+		// A suit that is not one of the four must not be taken for hearts.
+		boolean refused = false;
+		try {
+			getSuitIndex('X');
+		} catch (IllegalArgumentException e) {
+			refused = true;
+		}
+		System.out.println("Unknown suit refused" + (refused ? " - Success" : " - Failed"));
 	}
-	
+
 	// Constants are ALWAYS better than magic numbers no matter what :^)
 	public static final char DIAMONDS = 'D';
 	public static final char HEARTS = 'H';
@@ -48,11 +50,68 @@ public class PlayingCard {
 	public static final int KING_GAME_VALUE = 13;
 	public static final int ACE_GAME_VALUE = 14;
 
+	// The suits in the order DeckOfCards creates them (see getSuitIndex()).
+	private static final char[] SUITS = { HEARTS, DIAMONDS, CLUBS, SPADES };
+
+	/*
+	 * The 52 cards of a deck, created once and shared by every deck and hand.
+	 * Cards never change after they are created so there is no need for more
+	 * than one of each, and two cards are the same card exactly when they are
+	 * the same object (or have the same index).
+	 */
+	private static final PlayingCard[] CARDS = new PlayingCard[DeckOfCards.DECK_SIZE];
+
+	static {
+		for (int i = 0; i < DeckOfCards.DECK_SIZE; i++) {
+			CARDS[i] = create(i);
+		}
+	}
+
 	public PlayingCard(String type, char suit, int faceValue, int gameValue) {
 		this.type = type;
 		this.suit = suit;
 		this.faceValue = faceValue;
 		this.gameValue = gameValue;
+		this.index = getSuitIndex(suit) * DeckOfCards.NUMBER_OF_RANKS + gameValue - TWO_GAME_VALUE;
+	}
+
+	// The shared card with the given index (see getIndex()).
+	public static PlayingCard get(int index) {
+		return CARDS[index];
+	}
+
+	private static PlayingCard create(int index) {
+		char suit = SUITS[index / DeckOfCards.NUMBER_OF_RANKS];
+		int gameValue = index % DeckOfCards.NUMBER_OF_RANKS + TWO_GAME_VALUE;
+
+		switch (gameValue) {
+		case JACK_GAME_VALUE:
+			return new PlayingCard("J", suit, gameValue, gameValue);
+		case QUEEN_GAME_VALUE:
+			return new PlayingCard("Q", suit, gameValue, gameValue);
+		case KING_GAME_VALUE:
+			return new PlayingCard("K", suit, gameValue, gameValue);
+		case ACE_GAME_VALUE:
+			return new PlayingCard("A", suit, 1, gameValue);
+		default:
+			return new PlayingCard("" + gameValue, suit, gameValue, gameValue);
+		}
+	}
+
+	// Suits are numbered in the order DeckOfCards creates them.
+	public static int getSuitIndex(char suit) {
+		switch (suit) {
+		case HEARTS:
+			return 0;
+		case DIAMONDS:
+			return 1;
+		case CLUBS:
+			return 2;
+		case SPADES:
+			return 3;
+		default:
+			throw new IllegalArgumentException("Unknown suit " + suit);
+		}
 	}
 
 	public String toString() {
@@ -71,9 +130,20 @@ public class PlayingCard {
 		return suit;
 	}
 
-	private String type;
-	private char suit;
-	private int faceValue;
-	private int gameValue;
+	/*
+	 * The position of this card in a new, unshuffled deck: the suit index times
+	 * 13 plus the rank, where rank 0 is a two and rank 12 is an ace. This is
+	 * also the bit the card occupies in a CardSet, so every card fits in a
+	 * single int and every hand in a single long.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	private final String type;
+	private final char suit;
+	private final int faceValue;
+	private final int gameValue;
+	private final int index;
 
 }
@@ -1,5 +1,13 @@
 package poker;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
 public class PokerPlayer {
 	
 	// The discard function is in the HandOfCards class. I feel it belongs in that class
@@ -18,12 +26,16 @@ public class PokerPlayer {
 		 */
 		for (int i = 0; i < 10; i++) {
 			System.out.println("\n------------------------------");
+			// Start each test with a full deck. Up to four hands (and their
+			// discards) can be dealt in a row without a reset below.
+			d.reset();
 			while (!(highHand && onePair && twoPair && threeOfAKind)) {
 				p.dealHand();
 				
 				if (!highHand && p.hand.isHighHand()) {
 					System.out.println("\nHigh Hand");
 					System.out.println("Before: " + p.hand);
+					System.out.println("Equity against 3 opponents: " + p.getEquity(3, 0));
 					System.out.println("Discard " + p.hand.discard() + " cards.");
 					System.out.println("After: " + p.hand);
 					highHand = true;
@@ -65,6 +77,51 @@ public class PokerPlayer {
 			twoPair = false;
 			threeOfAKind = false;
 		}
+
+		zeroAllocationTest();
+	}
+
+	// Rounds played with a discard table should not allocate a single byte.
+	private static void zeroAllocationTest() {
+		try {
+			File file = File.createTempFile("discards", ".dat");
+			file.deleteOnExit();
+			DiscardTable.generate(file.getPath());
+			HandOfCards.setDiscardTable(DiscardTable.load(file.getPath()));
+		} catch (IOException e) {
+			System.out.println("Zero allocation rounds - Failed (" + e + ")");
+			return;
+		}
+
+		PokerPlayer player = new PokerPlayer(new DeckOfCards(15L));
+		final int rounds = 1000000;
+		long checksum = 0;
+		// Warm up first so the measured rounds run compiled code. With metrics
+		// on only one call in Metrics.SAMPLE_RATE is timed, and the timing
+		// code takes over a million rounds to be called often enough to be
+		// compiled. The first call of the compiled code allocates a few bytes
+		// (once), so that has to happen before the measurement.
+		final int warmUpRounds = Metrics.ENABLED ? 4 * rounds : rounds;
+		for (int i = 0; i < warmUpRounds; i++) {
+			checksum += player.playRound();
+		}
+
+		// Reading the counter allocates a little itself, so compare the
+		// rounds with an empty measurement.
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		long empty = threads.getThreadAllocatedBytes(thread) - before;
+		before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < rounds; i++) {
+			checksum += player.playRound();
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before - empty;
+		HandOfCards.setDiscardTable(null);
+
+		System.out.println("\nAllocated " + allocated + " bytes in " + rounds + " rounds (" + checksum + ")");
+		System.out.println("Zero allocation rounds" + (allocated == 0 ? " - Success" : " - Failed"));
 	}
 	
 	public PokerPlayer(DeckOfCards deck) {
@@ -72,10 +129,224 @@ public class PokerPlayer {
 	}
 	
 	// Deal a new hand for the player. Deal at round start, not on player creation.
+	// After the first round the same hand is dealt into again.
 	public void dealHand() {
-		this.hand = new HandOfCards(deck);
+		if (hand == null)
+			this.hand = new HandOfCards(deck);
+		else
+			hand.redeal();
+	}
+
+	public HandOfCards getHand() {
+		return hand;
+	}
+
+	/*
+	 * Choose how the player discards. The default is DiscardStrategy.BEST.
+	 * decide() needs the strategy's answer at once, so a strategy which is
+	 * not a table, BEST or one of the hand written ones is compiled into a
+	 * table here (see StrategyCompiler), which takes a few seconds.
+	 */
+	public void setDiscardStrategy(DiscardStrategy strategy) {
+		this.strategy = strategy;
+		if (strategy instanceof DiscardTable || strategy == DiscardStrategy.HEURISTIC
+				|| strategy == DiscardStrategy.STAND_PAT)
+			quickStrategy = strategy;
+		else if (strategy == DiscardStrategy.BEST)
+			quickStrategy = null;
+		else
+			quickStrategy = StrategyCompiler.compile(strategy);
+	}
+
+	public DiscardStrategy getDiscardStrategy() {
+		return strategy;
+	}
+
+	// Discard from the player's hand as the strategy decides and return the
+	// number of cards replaced.
+	public int discard() {
+		return Integer.bitCount(discardHand());
+	}
+
+	// Discard as the strategy decides and return the discard mask.
+	private int discardHand() {
+		Object event = GameEventHook.HOOK.beginDiscard();
+		HandCategory dealt = hand.getCategory();
+		int discardMask = hand.discard(strategy);
+		GameEventHook.HOOK.endDiscard(event, dealt, discardMask, hand.getCategory());
+		return discardMask;
+	}
+
+	/*
+	 * Play one round from a freshly reset deck: deal, discard and return the
+	 * value of the final hand. Once the first hand has been created a round
+	 * allocates nothing, as long as HandOfCards has a DiscardTable set (or
+	 * the strategy is a table).
+	 */
+	public int playRound() {
+		Object event = GameEventHook.HOOK.beginRound();
+		deck.reset();
+		dealHand();
+		HandCategory dealt = hand.getCategory();
+		int discardMask = discardHand();
+		GameEventHook.HOOK.endRound(event, dealt, discardMask, hand.getCategory(), hand.getGameValue());
+		return hand.getGameValue();
+	}
+
+	/*
+	 * How the player's hand is likely to do at showdown against the given
+	 * number of opponents. deadCards is a CardSet mask of any cards the player
+	 * knows are out of play (0 if none).
+	 */
+	public Equity getEquity(int opponents, long deadCards) {
+		return EQUITY_ESTIMATOR.estimate(hand, deadCards, opponents, EQUITY_TRIALS,
+				ThreadLocalRandom.current().nextLong());
 	}
 	
+	/*
+	 * Decide what to do with the hand within budgetNanos nanoseconds. The
+	 * first answer has to cost next to nothing, so it is the discard
+	 * strategy's looked up in a table (see setDiscardStrategy()). For BEST
+	 * it is the answer of the DiscardTable set on HandOfCards or, without
+	 * one, of the heuristic. DiscardEvaluator is never run in the budget.
+	 * After that random showdowns against the given number of opponents are
+	 * played, in batches, until the time is up: each one deals the opponents
+	 * random hands and draws replacement cards, and scores every discard of
+	 * up to DiscardEvaluator.MAX_DISCARDS cards on the same cards, so the
+	 * discards are compared fairly even after a few samples. Once there are
+	 * enough samples the discard which did best replaces the strategy's.
+	 * Opponents are dealt random hands and do not discard.
+	 *
+	 * The clock is checked after every batch, which takes a couple of
+	 * microseconds, and no batch is started which would not finish in time
+	 * going by the last one. The deadline is kept on a best effort basis
+	 * only: a busy machine mostly gets fewer samples, but a thread which is
+	 * descheduled, or held up by the garbage collector or a page fault,
+	 * answers late by however long that took.
+	 */
+	public Decision decide(long budgetNanos, int opponents) {
+		long start = System.nanoTime();
+		long deadline = start + budgetNanos;
+		if (opponents < 1 || HandOfCards.HAND_SIZE + DiscardEvaluator.MAX_DISCARDS
+				+ opponents * HandOfCards.HAND_SIZE > DeckOfCards.DECK_SIZE)
+			throw new IllegalArgumentException("Cannot play against " + opponents + " opponents");
+
+		int discard = getQuickDiscard();
+		int chosen = Arrays.binarySearch(DISCARD_CANDIDATES, discard);
+		if (chosen < 0)
+			throw new IllegalStateException("The strategy discarded more than " + DiscardEvaluator.MAX_DISCARDS
+					+ " cards");
+
+		long live = CardSet.FULL_DECK & ~hand.getCardMask();
+		for (int i = 0; i < liveCards.length; i++) {
+			liveCards[i] = Long.numberOfTrailingZeros(live);
+			live &= live - 1;
+		}
+		for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+			handCards[i] = hand.getCard(i).getIndex();
+		}
+		Arrays.fill(candidateWins, 0);
+		Arrays.fill(candidateTies, 0);
+
+		// The first MAX_DISCARDS shuffled cards are the draw, then five for
+		// each opponent.
+		int dealt = DiscardEvaluator.MAX_DISCARDS + opponents * HandOfCards.HAND_SIZE;
+		long samples = 0;
+		long now = System.nanoTime();
+		long batchNanos = 0;
+		while (now + batchNanos < deadline) {
+			for (int s = 0; s < SAMPLES_PER_BATCH; s++) {
+				for (int i = 0; i < dealt; i++) {
+					int j = i + random.nextInt(liveCards.length - i);
+					int swap = liveCards[i];
+					liveCards[i] = liveCards[j];
+					liveCards[j] = swap;
+				}
+
+				int best = 0;
+				for (int o = DiscardEvaluator.MAX_DISCARDS; o < dealt; o += HandOfCards.HAND_SIZE) {
+					best = Math.max(best, HandEvaluator.evaluate(liveCards[o], liveCards[o + 1], liveCards[o + 2],
+							liveCards[o + 3], liveCards[o + 4]));
+				}
+
+				for (int c = 0; c < DISCARD_CANDIDATES.length; c++) {
+					int value = evaluateDraw(DISCARD_CANDIDATES[c]);
+					if (value > best)
+						candidateWins[c]++;
+					else if (value == best)
+						candidateTies[c]++;
+				}
+			}
+			samples += SAMPLES_PER_BATCH;
+			// Do not start a batch which would end after the deadline.
+			long end = System.nanoTime();
+			batchNanos = end - now;
+			now = end;
+		}
+
+		// Too few samples to trust over the first answer: keep it.
+		if (samples >= MIN_SAMPLES) {
+			for (int c = 0; c < DISCARD_CANDIDATES.length; c++) {
+				if (2 * candidateWins[c] + candidateTies[c] > 2 * candidateWins[chosen] + candidateTies[chosen])
+					chosen = c;
+			}
+		}
+		Equity equity = new Equity(candidateWins[chosen], candidateTies[chosen],
+				samples - candidateWins[chosen] - candidateTies[chosen]);
+
+		// Bet on more than a fair share of the pot, fold on much less.
+		double fairShare = 1.0 / (opponents + 1);
+		Decision.Action action = Decision.Action.CALL;
+		if (samples > 0 && equity.getEquity() > RAISE_SHARE * fairShare)
+			action = Decision.Action.RAISE;
+		else if (samples > 0 && equity.getEquity() < FOLD_SHARE * fairShare)
+			action = Decision.Action.FOLD;
+
+		return new Decision(DISCARD_CANDIDATES[chosen], action, equity, samples, System.nanoTime() - start);
+	}
+
+	// A discard for decide() to start from, worked out in constant time.
+	private int getQuickDiscard() {
+		if (quickStrategy != null)
+			return quickStrategy.getDiscard(hand);
+		if (HandOfCards.getDiscardTable() != null)
+			return hand.getDiscard(HandOfCards.getDiscardTable());
+		return hand.getHeuristicDiscard();
+	}
+
+	// The value of the hand after the discard, drawing the first cards of
+	// liveCards.
+	private int evaluateDraw(int discardMask) {
+		int drawn = 0;
+		for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+			drawCards[i] = (discardMask & (1 << i)) != 0 ? liveCards[drawn++] : handCards[i];
+		}
+		return HandEvaluator.evaluate(drawCards[0], drawCards[1], drawCards[2], drawCards[3], drawCards[4]);
+	}
+
+	// Every discard of at most MAX_DISCARDS cards, in increasing order.
+	private static final int[] DISCARD_CANDIDATES = IntStream.range(0, DiscardEvaluator.NUMBER_OF_DISCARDS)
+			.filter(mask -> Integer.bitCount(mask) <= DiscardEvaluator.MAX_DISCARDS).toArray();
+	private static final int SAMPLES_PER_BATCH = 2;
+	private static final int MIN_SAMPLES = 1000;
+	private static final double RAISE_SHARE = 1.5;
+	private static final double FOLD_SHARE = 0.5;
+
+	// Scratch space for decide().
+	private final int[] liveCards = new int[DeckOfCards.DECK_SIZE - HandOfCards.HAND_SIZE];
+	private final int[] handCards = new int[HandOfCards.HAND_SIZE];
+	private final int[] drawCards = new int[HandOfCards.HAND_SIZE];
+	private final long[] candidateWins = new long[DISCARD_CANDIDATES.length];
+	private final long[] candidateTies = new long[DISCARD_CANDIDATES.length];
+	private final SplittableRandom random = new SplittableRandom();
+
+	private static final int EQUITY_TRIALS = 100000;
+	private static final EquityEstimator EQUITY_ESTIMATOR = new EquityEstimator();
+
 	private DeckOfCards deck;
 	private HandOfCards hand;
+	private DiscardStrategy strategy = DiscardStrategy.BEST;
+	// The strategy, or the table it was compiled into, for decide(). Null
+	// for BEST.
+	private DiscardStrategy quickStrategy;
 }
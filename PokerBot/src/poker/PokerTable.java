@@ -0,0 +1,94 @@
+package poker;
+
+/*
+ * One table: a deck and the players seated at it. Every round the deck is
+ * reset, each player is dealt a hand and discards, and the best final hand
+ * wins. A table shares nothing with any other table, so different tables
+ * can play on different threads at the same time, but one table must only
+ * be played by one thread at a time.
+ */
+public class PokerTable {
+
+	// Each seat can take up to eight cards in a round (five dealt and three
+	// drawn), and the deck must not run out.
+	public static final int MAX_SEATS = DeckOfCards.DECK_SIZE / (HandOfCards.HAND_SIZE + DiscardEvaluator.MAX_DISCARDS);
+
+	public PokerTable(int seats, long seed) {
+		if (seats < 1 || seats > MAX_SEATS)
+			throw new IllegalArgumentException("A table seats 1 to " + MAX_SEATS + " players, not " + seats);
+
+		deck = new DeckOfCards(seed);
+		players = new PokerPlayer[seats];
+		dealtCards = new long[seats];
+		for (int i = 0; i < seats; i++) {
+			players[i] = new PokerPlayer(deck);
+		}
+	}
+
+	// Play one round and return the seat of the winner (the lowest seat if
+	// two hands tie).
+	public int playRound() {
+		deck.reset();
+		for (PokerPlayer player : players) {
+			player.dealHand();
+		}
+
+		int winner = 0;
+		for (int i = 0; i < players.length; i++) {
+			HandOfCards hand = players[i].getHand();
+			dealtCards[i] = hand.getCardMask();
+			players[i].discard();
+			if (hand.getGameValue() > players[winner].getHand().getGameValue())
+				winner = i;
+		}
+
+		if (handHistoryLog != null)
+			logRound(players[winner].getHand().getGameValue());
+
+		roundsPlayed++;
+		return winner;
+	}
+
+	// Log each seat's hand once the best value at the table is known.
+	private void logRound(int bestValue) {
+		int winners = 0;
+		for (PokerPlayer player : players) {
+			if (player.getHand().getGameValue() == bestValue)
+				winners++;
+		}
+
+		for (int i = 0; i < players.length; i++) {
+			HandOfCards hand = players[i].getHand();
+			int outcome = HandHistoryLog.OUTCOME_LOST;
+			if (hand.getGameValue() == bestValue)
+				outcome = winners == 1 ? HandHistoryLog.OUTCOME_WON : HandHistoryLog.OUTCOME_TIED;
+			handHistoryLog.append(dealtCards[i], hand.getCardMask(), i, hand.getGameValue(), outcome);
+		}
+	}
+
+	// The player at the given seat, to set their discard strategy.
+	public PokerPlayer getPlayer(int seat) {
+		return players[seat];
+	}
+
+	// Log every hand played at the table, with the seat as the strategy.
+	// Null (the default) logs nothing.
+	public void setHandHistoryLog(HandHistoryLog log) {
+		handHistoryLog = log;
+	}
+
+	public int getNumberOfSeats() {
+		return players.length;
+	}
+
+	public long getRoundsPlayed() {
+		return roundsPlayed;
+	}
+
+	private final DeckOfCards deck;
+	private final PokerPlayer[] players;
+	// The cards each seat was dealt this round, kept for the log.
+	private final long[] dealtCards;
+	private long roundsPlayed;
+	private HandHistoryLog handHistoryLog;
+}
@@ -0,0 +1,13 @@
+package poker;
+
+/*
+ * Where a DeckOfCards gets its random numbers from. Any generator with a
+ * nextInt(bound) method can be plugged in with a method reference, e.g.
+ * new SplittableRandom(seed)::nextInt or new Random(seed)::nextInt, which
+ * makes it easy to replay the exact same deals while debugging.
+ */
+public interface RandomSource {
+
+	// Returns a random int from 0 (inclusive) up to bound (exclusive).
+	int nextInt(int bound);
+}
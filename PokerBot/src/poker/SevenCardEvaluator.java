@@ -0,0 +1,192 @@
+package poker;
+
+/*
+ * Scores the best five card hand that can be made from seven cards (two hole
+ * cards and five community cards in Texas Hold'em) without trying each of the
+ * 21 ways of picking five of them. The value is on the same scale as
+ * HandEvaluator and HandOfCards.getGameValue(), so a seven card value can be
+ * compared directly with a five card one.
+ *
+ * Two tables do the work:
+ *  - If five or more of the cards share a suit the hand is a flush, and
+ *    nothing that does not use the flush suit can beat it: a full house or
+ *    four of a kind alongside a flush would need at least eight cards. The
+ *    best flush (or straight flush) is looked up by the 13 bit rank mask of
+ *    that suit.
+ *  - Otherwise suits do not matter, and the hand is looked up by its rank
+ *    count key (the same base 5 key HandEvaluator uses) in a perfect hash
+ *    table holding all 49,205 ways seven cards can fall into ranks.
+ */
+public class SevenCardEvaluator {
+
+	public static void main(String[] args) {
+		// Check random hands against scoring all 21 five card subsets.
+		DeckOfCards deck = new DeckOfCards(7L);
+		int[] cards = new int[HAND_SIZE];
+		boolean matches = true;
+		for (int i = 0; i < 1000000; i++) {
+			deck.reset();
+			for (int j = 0; j < HAND_SIZE; j++) {
+				cards[j] = deck.dealNext().getIndex();
+			}
+			if (evaluate(cards[0], cards[1], cards[2], cards[3], cards[4], cards[5], cards[6]) != bestOfSubsets(cards))
+				matches = false;
+		}
+		System.out.println("Best of 21 subsets" + (matches ? " - Success" : " - Failed"));
+
+		// Score all 133,784,560 seven card hands and compare the number in
+		// each tier with the well known seven card frequencies.
+		final long[] expected = { 23294460, 58627800, 31433400, 6461620, 6180020, 4047644, 3473184, 224848, 37260,
+				4324 };
+		long[] counts = new long[expected.length];
+		long start = System.nanoTime();
+		for (int c0 = 0; c0 < DeckOfCards.DECK_SIZE; c0++) {
+			long m0 = CardSet.bit(c0);
+			for (int c1 = c0 + 1; c1 < DeckOfCards.DECK_SIZE; c1++) {
+				long m1 = m0 | CardSet.bit(c1);
+				for (int c2 = c1 + 1; c2 < DeckOfCards.DECK_SIZE; c2++) {
+					long m2 = m1 | CardSet.bit(c2);
+					for (int c3 = c2 + 1; c3 < DeckOfCards.DECK_SIZE; c3++) {
+						long m3 = m2 | CardSet.bit(c3);
+						for (int c4 = c3 + 1; c4 < DeckOfCards.DECK_SIZE; c4++) {
+							long m4 = m3 | CardSet.bit(c4);
+							for (int c5 = c4 + 1; c5 < DeckOfCards.DECK_SIZE; c5++) {
+								long m5 = m4 | CardSet.bit(c5);
+								for (int c6 = c5 + 1; c6 < DeckOfCards.DECK_SIZE; c6++) {
+									counts[HandCategory.fromGameValue(evaluate(m5 | CardSet.bit(c6))).ordinal()]++;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+
+		HandCategory[] categories = HandCategory.values();
+		for (int i = 0; i < expected.length; i++) {
+			System.out.println(
+					categories[i] + ": " + counts[i] + (counts[i] == expected[i] ? " - Success" : " - Failed"));
+		}
+		System.out.println("Average time per hand: " + (double) elapsed / 133784560 + "ns");
+	}
+
+	public static final int HAND_SIZE = 7;
+
+	// The best flush or straight flush among the ranks of a mask with five or
+	// more ranks set.
+	private static final int[] FLUSH_VALUES = new int[1 << DeckOfCards.NUMBER_OF_RANKS];
+
+	// Best value of each rank count key, see HandEvaluator.
+	private static final int NUMBER_OF_RANK_COUNTS = 49205;
+	private static final PerfectHashTable RANK_VALUES;
+
+	// Suits used to turn a multiset of ranks into real cards. Consecutive
+	// cards get different suits and no suit is used more than twice, so the
+	// cards are all different and no five of them make a flush.
+	private static final int[] RANK_ONLY_SUITS = { 0, 1, 2, 3, 0, 1, 2 };
+
+	static {
+		final int flushSuit = 0;
+		int[] cards = new int[HAND_SIZE];
+		for (int rankBits = 0; rankBits < FLUSH_VALUES.length; rankBits++) {
+			int size = Integer.bitCount(rankBits);
+			if (size < HandOfCards.HAND_SIZE || size > HAND_SIZE)
+				continue;
+			int n = 0;
+			for (int r = 0; r < DeckOfCards.NUMBER_OF_RANKS; r++) {
+				if ((rankBits & (1 << r)) != 0)
+					cards[n++] = flushSuit * DeckOfCards.NUMBER_OF_RANKS + r;
+			}
+			FLUSH_VALUES[rankBits] = bestOfSubsets(cards, n);
+		}
+
+		int[] ranks = new int[HAND_SIZE];
+		int[] keys = new int[NUMBER_OF_RANK_COUNTS];
+		int[] values = new int[NUMBER_OF_RANK_COUNTS];
+		addRankCounts(ranks, 0, 0, cards, keys, values, 0);
+		RANK_VALUES = new PerfectHashTable(keys, values);
+	}
+
+	// Walk every non-decreasing sequence of seven ranks with no rank used more
+	// than four times and record the key and best hand of each one, starting
+	// at position n of keys and values. Returns the new number of entries.
+	private static int addRankCounts(int[] ranks, int position, int lowestRank, int[] cards, int[] keys,
+			int[] values, int n) {
+		if (position == HAND_SIZE) {
+			int key = 0;
+			for (int i = 0; i < HAND_SIZE; i++) {
+				cards[i] = RANK_ONLY_SUITS[i] * DeckOfCards.NUMBER_OF_RANKS + ranks[i];
+				key += HandEvaluator.RANK_KEYS[cards[i]];
+			}
+			keys[n] = key;
+			values[n] = bestOfSubsets(cards, HAND_SIZE);
+			return n + 1;
+		}
+
+		for (int r = lowestRank; r < DeckOfCards.NUMBER_OF_RANKS; r++) {
+			if (position >= 4 && ranks[position - 4] == r)
+				continue;
+			ranks[position] = r;
+			n = addRankCounts(ranks, position + 1, r, cards, keys, values, n);
+		}
+		return n;
+	}
+
+	// Score every five card subset of the first n cards and keep the best.
+	// Only used to build the tables and to test them.
+	private static int bestOfSubsets(int[] cards, int n) {
+		int best = 0;
+		for (int a = 0; a < n; a++)
+			for (int b = a + 1; b < n; b++)
+				for (int c = b + 1; c < n; c++)
+					for (int d = c + 1; d < n; d++)
+						for (int e = d + 1; e < n; e++)
+							best = Math.max(best,
+									HandEvaluator.evaluate(cards[a], cards[b], cards[c], cards[d], cards[e]));
+		return best;
+	}
+
+	private static int bestOfSubsets(int[] cards) {
+		return bestOfSubsets(cards, cards.length);
+	}
+
+	// Score a CardSet mask holding exactly seven cards.
+	public static int evaluate(long cards) {
+		int hearts = CardSet.getRankMask(cards, 0);
+		int diamonds = CardSet.getRankMask(cards, 1);
+		int clubs = CardSet.getRankMask(cards, 2);
+		int spades = CardSet.getRankMask(cards, 3);
+
+		// At most one suit can hold five of the seven cards.
+		if (Integer.bitCount(hearts) >= HandOfCards.HAND_SIZE)
+			return FLUSH_VALUES[hearts];
+		if (Integer.bitCount(diamonds) >= HandOfCards.HAND_SIZE)
+			return FLUSH_VALUES[diamonds];
+		if (Integer.bitCount(clubs) >= HandOfCards.HAND_SIZE)
+			return FLUSH_VALUES[clubs];
+		if (Integer.bitCount(spades) >= HandOfCards.HAND_SIZE)
+			return FLUSH_VALUES[spades];
+
+		return RANK_VALUES.get(HandEvaluator.SUIT_RANK_KEYS[hearts] + HandEvaluator.SUIT_RANK_KEYS[diamonds]
+				+ HandEvaluator.SUIT_RANK_KEYS[clubs] + HandEvaluator.SUIT_RANK_KEYS[spades]);
+	}
+
+	// Score seven cards given by their deck index, in any order.
+	public static int evaluate(int c0, int c1, int c2, int c3, int c4, int c5, int c6) {
+		return evaluate(CardSet.bit(c0) | CardSet.bit(c1) | CardSet.bit(c2) | CardSet.bit(c3) | CardSet.bit(c4)
+				| CardSet.bit(c5) | CardSet.bit(c6));
+	}
+
+	// Score two hole cards together with five community cards.
+	public static int evaluate(PlayingCard[] holeCards, PlayingCard[] communityCards) {
+		long cards = 0;
+		for (PlayingCard card : holeCards) {
+			cards |= CardSet.bit(card);
+		}
+		for (PlayingCard card : communityCards) {
+			cards |= CardSet.bit(card);
+		}
+		return evaluate(cards);
+	}
+}
@@ -0,0 +1,118 @@
+package poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/*
+ * Turns any DiscardStrategy into a DiscardTable. The strategy is asked once
+ * about one hand of every hand class (see SuitIsomorphism) and its answers
+ * are frozen into a table, so a strategy which is slow to make up its mind
+ * can afterwards be played at the speed of a table lookup (one canonicalize
+ * and one byte).
+ *
+ * This is only exact for strategies which treat the four suits alike: every
+ * hand of a class gets the discard the strategy chose for the class's own
+ * hand, moved over to the matching cards.
+ */
+public class StrategyCompiler {
+
+	public static void main(String[] args) throws IOException {
+		long start = System.nanoTime();
+		DiscardTable compiled = compile(DiscardStrategy.HEURISTIC);
+		System.out.println("Compiled the heuristic in " + (System.nanoTime() - start) / 1000000 + "ms");
+
+		// The table must make the same decision as the strategy, up to which
+		// of two cards of the same rank it picks when that makes no difference.
+		DeckOfCards deck = new DeckOfCards(new SplittableRandom(41)::nextInt);
+		HandOfCards[] hands = new HandOfCards[100000];
+		int same = 0, equivalent = 0;
+		for (int i = 0; i < hands.length; i++) {
+			deck.reset();
+			hands[i] = new HandOfCards(deck);
+			int expected = DiscardStrategy.HEURISTIC.getDiscard(hands[i]);
+			int actual = compiled.getDiscard(hands[i]);
+			if (expected == actual)
+				same++;
+			if (SuitIsomorphism.canonicalize(kept(hands[i], expected), thrown(hands[i], expected), null)
+					== SuitIsomorphism.canonicalize(kept(hands[i], actual), thrown(hands[i], actual), null))
+				equivalent++;
+		}
+		System.out.println("Same discards: " + same + " of " + hands.length + ", equivalent: " + equivalent
+				+ (equivalent == hands.length ? " - Success" : " - Failed"));
+
+		// A saved table loads back the same.
+		File file = File.createTempFile("heuristic", ".dat");
+		file.deleteOnExit();
+		compiled.save(file.getPath());
+		DiscardTable loaded = DiscardTable.load(file.getPath());
+		boolean matches = true;
+		for (HandOfCards hand : hands) {
+			if (loaded.getDiscard(hand) != compiled.getDiscard(hand))
+				matches = false;
+		}
+		System.out.println("Saved table" + (matches ? " - Success" : " - Failed"));
+
+		// A slow strategy against its table: with no table set, BEST works
+		// the discard out with DiscardEvaluator every time.
+		start = System.nanoTime();
+		DiscardTable best = compile(DiscardStrategy.BEST);
+		System.out.println("Compiled the best discards in " + (System.nanoTime() - start) / 1000000 + "ms");
+		DiscardStrategy[] strategies = { DiscardStrategy.HEURISTIC, compiled, DiscardStrategy.BEST, best };
+		String[] names = { "Heuristic", "Compiled heuristic", "Best", "Compiled best" };
+		for (int s = 0; s < strategies.length; s++) {
+			long elapsed = 0;
+			int checksum = 0;
+			for (int round = 0; round < 5; round++) {
+				start = System.nanoTime();
+				for (int i = 0; i < 10000; i++) {
+					checksum += strategies[s].getDiscard(hands[i]);
+				}
+				elapsed = System.nanoTime() - start;
+			}
+			System.out.println(names[s] + ": " + elapsed / 10000 + "ns per decision (" + checksum + ")");
+		}
+	}
+
+	// The cards a discard keeps and the ones it throws away, as CardSet masks.
+	private static long kept(HandOfCards hand, int discardMask) {
+		return hand.getCardMask() & ~thrown(hand, discardMask);
+	}
+
+	private static long thrown(HandOfCards hand, int discardMask) {
+		long thrown = 0;
+		for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+			if ((discardMask & (1 << i)) != 0)
+				thrown |= CardSet.bit(hand.getCard(i));
+		}
+		return thrown;
+	}
+
+	/*
+	 * Ask the strategy about every hand class (in parallel, so the strategy
+	 * must be safe to call from several threads) and return the table of its
+	 * answers.
+	 */
+	public static DiscardTable compile(DiscardStrategy strategy) {
+		byte[] discards = new byte[SuitIsomorphism.NUMBER_OF_HAND_CLASSES];
+		IntStream.range(0, discards.length).parallel().forEach(handClass -> {
+			long canonical = SuitIsomorphism.getClassRepresentative(handClass);
+			// The hand is never discarded from, so it needs no deck.
+			HandOfCards hand = new HandOfCards(null, new CardSet(canonical).toPlayingCards());
+			int discardMask = strategy.getDiscard(hand);
+
+			// The table's bit i stands for the i-th lowest card of the
+			// canonical hand, not for a position in the HandOfCards.
+			int canonicalDiscard = 0;
+			for (int i = 0; i < HandOfCards.HAND_SIZE; i++) {
+				if ((discardMask & (1 << i)) != 0) {
+					long bit = CardSet.bit(hand.getCard(i));
+					canonicalDiscard |= 1 << Long.bitCount(canonical & (bit - 1));
+				}
+			}
+			discards[handClass] = (byte) canonicalDiscard;
+		});
+		return new DiscardTable(DiscardTable.toBuffer(discards));
+	}
+}
@@ -0,0 +1,300 @@
+package poker;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/*
+ * Nothing in poker depends on which suit is which, only on which cards share
+ * a suit, so relabelling the four suits turns a hand into another hand that
+ * plays exactly the same way. This class picks one hand from each such group
+ * (the canonical hand) so that results worked out for it can be reused for
+ * every other hand in the group, which makes tables and caches up to 24
+ * times smaller.
+ *
+ * The canonical hand is found by sorting the four 13 bit suit lanes of a
+ * CardSet mask so the largest lane comes first (in the hearts lane). Two hands
+ * are the same up to suits exactly when they sort to the same mask. A hand can
+ * come with a set of dead cards (cards known to be out of play, such as the
+ * board or other players' discards), in which case the suits are sorted by
+ * their hand lane and then by their dead lane, and the same relabelling is
+ * applied to both.
+ *
+ * The 2,598,960 five card hands fall into 134,459 groups (hand classes), which
+ * are numbered 0 to 134,458 in order of their canonical mask. The class of a
+ * canonical hand is found from its colex index (see HandRankTable) with a
+ * perfect hash table. For other sizes, or hands with dead cards, create a
+ * SuitIsomorphism for the sizes wanted and use getIndex().
+ */
+public class SuitIsomorphism {
+
+	public static void main(String[] args) {
+		System.out.println("Hand classes: " + HAND_CLASSES.length
+				+ (HAND_CLASSES.length == NUMBER_OF_HAND_CLASSES ? " - Success" : " - Failed"));
+
+		// Relabelling the suits of a hand must not change its class, and the
+		// permutation must take the hand to its canonical hand.
+		DeckOfCards deck = new DeckOfCards(12L);
+		int[] permutation = new int[DeckOfCards.NUMBER_OF_SUITS];
+		boolean invariant = true;
+		for (int i = 0; i < 100000; i++) {
+			deck.reset();
+			long cards = 0;
+			long swapped = 0;
+			for (int j = 0; j < HandOfCards.HAND_SIZE; j++) {
+				int card = deck.dealNext().getIndex();
+				int suit = card / DeckOfCards.NUMBER_OF_RANKS;
+				cards |= CardSet.bit(card);
+				swapped |= CardSet.bit((3 - suit) * DeckOfCards.NUMBER_OF_RANKS + card % DeckOfCards.NUMBER_OF_RANKS);
+			}
+			long canonical = canonicalize(cards, permutation);
+			if (getHandClass(cards) != getHandClass(swapped) || canonicalize(swapped) != canonical
+					|| permute(cards, permutation) != canonical
+					|| getClassRepresentative(getHandClass(cards)) != canonical
+					|| HandEvaluator.evaluate(canonical) != HandEvaluator.evaluate(cards))
+				invariant = false;
+		}
+		System.out.println("Suit relabelling" + (invariant ? " - Success" : " - Failed"));
+
+		// Two hole cards with a three card flop as the dead cards. The number
+		// of classes is the well known count of distinct Hold'em flops.
+		SuitIsomorphism flops = new SuitIsomorphism(2, 3);
+		System.out.println("Flop classes: " + flops.getNumberOfClasses()
+				+ (flops.getNumberOfClasses() == 1286792 ? " - Success" : " - Failed"));
+
+		// Any relabelling of the suits must give the same index, and the
+		// permutation must map the cards onto the class's canonical cards.
+		SplittableRandom random = new SplittableRandom(12);
+		int[] relabel = new int[DeckOfCards.NUMBER_OF_SUITS];
+		invariant = true;
+		for (int i = 0; i < 100000; i++) {
+			deck.reset();
+			long hole = CardSet.bit(deck.dealNext()) | CardSet.bit(deck.dealNext());
+			long flop = CardSet.bit(deck.dealNext()) | CardSet.bit(deck.dealNext()) | CardSet.bit(deck.dealNext());
+			for (int suit = 0; suit < relabel.length; suit++) {
+				relabel[suit] = suit;
+				int j = random.nextInt(suit + 1);
+				relabel[suit] = relabel[j];
+				relabel[j] = suit;
+			}
+
+			int index = flops.getIndex(hole, flop);
+			long canonical = canonicalize(hole, flop, permutation);
+			if (flops.getIndex(permute(hole, relabel), permute(flop, relabel)) != index
+					|| flops.getHand(index) != canonical || flops.getDead(index) != permute(flop, permutation)
+					|| permute(hole, permutation) != canonical)
+				invariant = false;
+		}
+		System.out.println("Dead card relabelling" + (invariant ? " - Success" : " - Failed"));
+	}
+
+	public static final int NUMBER_OF_HAND_CLASSES = 134459;
+
+	// The canonical mask of every five card hand class, lowest first, and the
+	// class of each canonical hand by its colex index.
+	private static final long[] HAND_CLASSES;
+	private static final PerfectHashTable CLASS_INDEX;
+
+	static {
+		long[] canonical = new long[HandRankTable.NUMBER_OF_HANDS];
+		int n = 0;
+		for (int c0 = 0; c0 < DeckOfCards.DECK_SIZE; c0++)
+			for (int c1 = c0 + 1; c1 < DeckOfCards.DECK_SIZE; c1++)
+				for (int c2 = c1 + 1; c2 < DeckOfCards.DECK_SIZE; c2++)
+					for (int c3 = c2 + 1; c3 < DeckOfCards.DECK_SIZE; c3++)
+						for (int c4 = c3 + 1; c4 < DeckOfCards.DECK_SIZE; c4++)
+							canonical[n++] = canonicalize(CardSet.bit(c0) | CardSet.bit(c1) | CardSet.bit(c2)
+									| CardSet.bit(c3) | CardSet.bit(c4));
+		Arrays.sort(canonical);
+		HAND_CLASSES = Arrays.stream(canonical).distinct().toArray();
+
+		int[] handIndices = new int[HAND_CLASSES.length];
+		int[] handClasses = new int[HAND_CLASSES.length];
+		for (int i = 0; i < HAND_CLASSES.length; i++) {
+			handIndices[i] = HandRankTable.getHandIndex(HAND_CLASSES[i]);
+			handClasses[i] = i;
+		}
+		CLASS_INDEX = new PerfectHashTable(handIndices, handClasses);
+	}
+
+	/*
+	 * The classes of a hand of handSize cards together with deadSize dead
+	 * cards, numbered 0 to getNumberOfClasses() - 1 in order of canonical hand
+	 * and then canonical dead cards. Every class is listed when this is
+	 * created (which means looking at each canonical hand with every possible
+	 * set of dead cards), so it is meant for small sizes such as a five card
+	 * hand with a discard or two, or two hole cards with a flop.
+	 */
+	public SuitIsomorphism(int handSize, int deadSize) {
+		long[] canonicalHands = new long[HandRankTable.NUMBER_OF_HANDS];
+		int numberOfHands = 0;
+		for (long hand = firstSubset(handSize); hand < CardSet.FULL_DECK + 1; hand = nextSubset(hand)) {
+			if (canonicalize(hand) == hand) {
+				if (numberOfHands == canonicalHands.length)
+					canonicalHands = Arrays.copyOf(canonicalHands, 2 * numberOfHands);
+				canonicalHands[numberOfHands++] = hand;
+			}
+		}
+		this.hands = Arrays.copyOf(canonicalHands, numberOfHands);
+
+		// A pair of hand and dead cards is canonical when it is its own
+		// canonical form. Subsets come out lowest first so both lists end up
+		// sorted.
+		long[] canonicalDead = new long[numberOfHands];
+		int numberOfClasses = 0;
+		this.offsets = new int[numberOfHands + 1];
+		for (int i = 0; i < numberOfHands; i++) {
+			offsets[i] = numberOfClasses;
+			for (long dead = firstSubset(deadSize); dead < CardSet.FULL_DECK + 1; dead = nextSubset(dead)) {
+				if ((dead & hands[i]) != 0 || canonicalize(hands[i], dead, null) != hands[i]
+						|| canonicalizeDead(hands[i], dead) != dead)
+					continue;
+				if (numberOfClasses == canonicalDead.length)
+					canonicalDead = Arrays.copyOf(canonicalDead, 2 * numberOfClasses);
+				canonicalDead[numberOfClasses++] = dead;
+			}
+		}
+		offsets[numberOfHands] = numberOfClasses;
+		this.dead = Arrays.copyOf(canonicalDead, numberOfClasses);
+	}
+
+	// The lowest mask with size bits set, the first subset of that size.
+	private static long firstSubset(int size) {
+		return (1L << size) - 1;
+	}
+
+	// The next larger mask with the same number of bits set. Once every subset
+	// of the deck has been visited this goes past FULL_DECK. There is only one
+	// empty subset.
+	private static long nextSubset(long subset) {
+		if (subset == 0)
+			return CardSet.FULL_DECK + 1;
+		long lowest = subset & -subset;
+		long carried = subset + lowest;
+		return carried | ((carried ^ subset) >>> 2) / lowest;
+	}
+
+	// The canonical form of the dead cards alongside a hand.
+	private static long canonicalizeDead(long hand, long dead) {
+		int[] permutation = new int[DeckOfCards.NUMBER_OF_SUITS];
+		canonicalize(hand, dead, permutation);
+		return permute(dead, permutation);
+	}
+
+	public int getNumberOfClasses() {
+		return dead.length;
+	}
+
+	// The class of a hand and its dead cards, in any suits.
+	public int getIndex(long hand, long deadCards) {
+		int[] permutation = new int[DeckOfCards.NUMBER_OF_SUITS];
+		long canonicalHand = canonicalize(hand, deadCards, permutation);
+		int handIndex = Arrays.binarySearch(hands, canonicalHand);
+		return Arrays.binarySearch(dead, offsets[handIndex], offsets[handIndex + 1], permute(deadCards, permutation));
+	}
+
+	// The canonical hand and dead cards of a class.
+	public long getHand(int index) {
+		int handIndex = Arrays.binarySearch(offsets, index);
+		if (handIndex < 0)
+			handIndex = -handIndex - 2;
+		// Skip any hands which have no classes (only possible when the dead
+		// cards cannot fit around the hand).
+		while (offsets[handIndex + 1] == index) {
+			handIndex++;
+		}
+		return hands[handIndex];
+	}
+
+	public long getDead(int index) {
+		return dead[index];
+	}
+
+	public static long canonicalize(long cards) {
+		return canonicalize(cards, 0, null);
+	}
+
+	public static long canonicalize(long cards, int[] permutation) {
+		return canonicalize(cards, 0, permutation);
+	}
+
+	/*
+	 * Returns the canonical mask of a hand with the given dead cards. If
+	 * permutation is not null it is filled in with the canonical suit of each
+	 * suit, so that card suit * 13 + rank of the original cards is card
+	 * permutation[suit] * 13 + rank of the canonical ones. The canonical dead
+	 * cards are permute(dead, permutation).
+	 */
+	public static long canonicalize(long cards, long dead, int[] permutation) {
+		// Each key is a suit's hand lane, then its dead lane, then the suit in
+		// the low two bits, so sorting the keys sorts the lanes and remembers
+		// where each came from.
+		int k0 = (CardSet.getRankMask(cards, 0) << DeckOfCards.NUMBER_OF_RANKS | CardSet.getRankMask(dead, 0)) << 2;
+		int k1 = (CardSet.getRankMask(cards, 1) << DeckOfCards.NUMBER_OF_RANKS | CardSet.getRankMask(dead, 1)) << 2 | 1;
+		int k2 = (CardSet.getRankMask(cards, 2) << DeckOfCards.NUMBER_OF_RANKS | CardSet.getRankMask(dead, 2)) << 2 | 2;
+		int k3 = (CardSet.getRankMask(cards, 3) << DeckOfCards.NUMBER_OF_RANKS | CardSet.getRankMask(dead, 3)) << 2 | 3;
+
+		// Sorting network for four keys, largest first. The keys are never
+		// equal since their suits differ.
+		int high = Math.max(k0, k1);
+		int low = Math.min(k0, k1);
+		k0 = high;
+		k1 = low;
+		high = Math.max(k2, k3);
+		low = Math.min(k2, k3);
+		k2 = high;
+		k3 = low;
+		high = Math.max(k0, k2);
+		low = Math.min(k0, k2);
+		k0 = high;
+		k2 = low;
+		high = Math.max(k1, k3);
+		low = Math.min(k1, k3);
+		k1 = high;
+		k3 = low;
+		high = Math.max(k1, k2);
+		low = Math.min(k1, k2);
+		k1 = high;
+		k2 = low;
+
+		if (permutation != null) {
+			permutation[k0 & 3] = 0;
+			permutation[k1 & 3] = 1;
+			permutation[k2 & 3] = 2;
+			permutation[k3 & 3] = 3;
+		}
+		int handShift = DeckOfCards.NUMBER_OF_RANKS + 2;
+		return (long) (k0 >>> handShift) | (long) (k1 >>> handShift) << DeckOfCards.NUMBER_OF_RANKS
+				| (long) (k2 >>> handShift) << (2 * DeckOfCards.NUMBER_OF_RANKS)
+				| (long) (k3 >>> handShift) << (3 * DeckOfCards.NUMBER_OF_RANKS);
+	}
+
+	// Move each suit lane of cards to the suit given by permutation.
+	public static long permute(long cards, int[] permutation) {
+		long result = 0;
+		for (int suit = 0; suit < DeckOfCards.NUMBER_OF_SUITS; suit++) {
+			result |= (long) CardSet.getRankMask(cards, suit) << (permutation[suit] * DeckOfCards.NUMBER_OF_RANKS);
+		}
+		return result;
+	}
+
+	// The class (0 to NUMBER_OF_HAND_CLASSES - 1) of a five card hand.
+	public static int getHandClass(long cards) {
+		return getCanonicalHandClass(canonicalize(cards));
+	}
+
+	// The class of a five card hand which is already canonical.
+	public static int getCanonicalHandClass(long canonical) {
+		return CLASS_INDEX.get(HandRankTable.getHandIndex(canonical));
+	}
+
+	// The canonical hand of a hand class.
+	public static long getClassRepresentative(int handClass) {
+		return HAND_CLASSES[handClass];
+	}
+
+	// The canonical hands (lowest first), where each hand's classes start in
+	// the dead card list, and the canonical dead cards of every class.
+	private final long[] hands;
+	private final int[] offsets;
+	private final long[] dead;
+}
@@ -0,0 +1,136 @@
+package poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Plays rounds on many tables at once. Each table is a task which plays a
+ * few rounds and then puts itself back at the end of the queue, so a small
+ * pool of threads (one per core by default) takes turns over any number of
+ * tables: a waiting table is just an object in a queue, not a thread. A table
+ * is only ever in the queue once, so no two threads play it at the same time
+ * and tables need no locks. The pool runs in FIFO mode so every table gets
+ * its turn in order.
+ *
+ * The only thing the tables share is a LongAdder counting hands (rounds)
+ * played, which threads can add to without contending. A reporter thread
+ * prints the number of hands per second while the engine runs.
+ *
+ * Java 8 has no virtual threads; scheduling the tables as short tasks on a
+ * fixed pool gives the same effect of many more tables than threads.
+ */
+public class TableEngine {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int numberOfTables = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+		// Look up discards in a table so the rounds are not dominated by
+		// working them out.
+		File file = File.createTempFile("discards", ".dat");
+		file.deleteOnExit();
+		DiscardTable.generate(file.getPath());
+		HandOfCards.setDiscardTable(DiscardTable.load(file.getPath()));
+
+		TableEngine engine = new TableEngine(numberOfTables, 4, Runtime.getRuntime().availableProcessors(), 17L);
+		System.out.println("Playing " + numberOfTables + " tables on " + engine.pool.getParallelism() + " threads");
+		engine.start(1000);
+		Thread.sleep(seconds * 1000L);
+		engine.stop();
+
+		// Every hand counted must have been played by exactly one table.
+		long played = 0;
+		boolean everyTablePlayed = true;
+		for (PokerTable table : engine.tables) {
+			played += table.getRoundsPlayed();
+			if (table.getRoundsPlayed() == 0)
+				everyTablePlayed = false;
+		}
+		System.out.println("Hands played: " + engine.getHandsPlayed()
+				+ (played == engine.getHandsPlayed() && everyTablePlayed ? " - Success" : " - Failed"));
+	}
+
+	// Rounds a table plays each time it gets a thread.
+	private static final int ROUNDS_PER_TURN = 8;
+
+	private final PokerTable[] tables;
+	private final ForkJoinPool pool;
+	private final LongAdder handsPlayed = new LongAdder();
+	private volatile boolean running;
+	private ScheduledExecutorService reporter;
+
+	public TableEngine(int numberOfTables, int seatsPerTable, int threads, long seed) {
+		tables = new PokerTable[numberOfTables];
+		for (int i = 0; i < numberOfTables; i++) {
+			tables[i] = new PokerTable(seatsPerTable, seed + i);
+		}
+		pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+	}
+
+	/*
+	 * Start every table playing. If reportMillis is more than 0 the number of
+	 * hands per second is printed that often.
+	 */
+	public void start(long reportMillis) {
+		running = true;
+		for (PokerTable table : tables) {
+			pool.execute(new Turn(table));
+		}
+
+		if (reportMillis > 0) {
+			reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "TableEngine reporter");
+				thread.setDaemon(true);
+				return thread;
+			});
+			long[] last = { 0, System.nanoTime() };
+			reporter.scheduleAtFixedRate(() -> {
+				long hands = handsPlayed.sum();
+				long now = System.nanoTime();
+				System.out.println("Hands per second: " + (long) ((hands - last[0]) * 1e9 / (now - last[1]))
+						+ " (" + hands + " played)");
+				last[0] = hands;
+				last[1] = now;
+			}, reportMillis, reportMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// Stop the tables after their current turn and wait for them to finish.
+	public void stop() throws InterruptedException {
+		running = false;
+		if (reporter != null)
+			reporter.shutdownNow();
+		pool.awaitQuiescence(1, TimeUnit.MINUTES);
+		pool.shutdown();
+		pool.awaitTermination(1, TimeUnit.MINUTES);
+	}
+
+	public long getHandsPlayed() {
+		return handsPlayed.sum();
+	}
+
+	private class Turn implements Runnable {
+
+		Turn(PokerTable table) {
+			this.table = table;
+		}
+
+		public void run() {
+			for (int i = 0; i < ROUNDS_PER_TURN; i++) {
+				table.playRound();
+			}
+			handsPlayed.add(ROUNDS_PER_TURN);
+
+			// Go to the back of the queue to give the other tables a turn.
+			if (running)
+				pool.execute(this);
+		}
+
+		private final PokerTable table;
+	}
+}
@@ -0,0 +1,38 @@
+package poker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Writing the table files (HandRankTable, DiscardTable) which bots memory map.
+ */
+class TableFiles {
+
+	/*
+	 * Write the rest of the buffer to a new file next to the given one and
+	 * rename it over the old file. A JVM which has the old file mapped keeps
+	 * reading the old table, and a crash part way through never leaves a
+	 * short table behind.
+	 */
+	static void writeAtomically(ByteBuffer buffer, String fileName) throws IOException {
+		Path path = Paths.get(fileName).toAbsolutePath();
+		Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
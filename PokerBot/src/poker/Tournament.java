@@ -0,0 +1,154 @@
+package poker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Plays discard strategies (see DiscardStrategy) against each other. Every
+ * round all of the strategies sit at one table, are dealt a hand each from
+ * the same deck, discard, and the best final hand wins. The seats turn round
+ * by one every round so no strategy gets the advantage of drawing first for
+ * long.
+ *
+ * The rounds are cut into blocks of ROUNDS_PER_BLOCK, and each block is
+ * played with its own deck, seeded from the tournament seed and the block
+ * number. The blocks are split between the threads of a ForkJoinPool the
+ * same way EquityEstimator splits its trials, and the results are only
+ * counts which are added up, so a tournament gives exactly the same result
+ * for a given seed on any number of threads.
+ */
+public class Tournament {
+
+	public static void main(String[] args) throws IOException {
+		long rounds = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+
+		File file = File.createTempFile("discards", ".dat");
+		file.deleteOnExit();
+		DiscardTable.generate(file.getPath());
+		HandOfCards.setDiscardTable(DiscardTable.load(file.getPath()));
+
+		Tournament tournament = new Tournament();
+		tournament.addStrategy("Best", DiscardStrategy.BEST);
+		tournament.addStrategy("Heuristic", DiscardStrategy.HEURISTIC);
+		tournament.addStrategy("Stand pat", DiscardStrategy.STAND_PAT);
+
+		long start = System.nanoTime();
+		TournamentResult result = tournament.run(rounds, 31L);
+		long elapsed = System.nanoTime() - start;
+		System.out.println(result);
+		System.out.println((long) (rounds * 1e9 / elapsed) + " rounds per second on "
+				+ ForkJoinPool.commonPool().getParallelism() + " threads\n");
+
+		// The same seed gives the same result however many threads play.
+		String one = tournament.run(100000, 7L, new ForkJoinPool(1)).toString();
+		String three = tournament.run(100000, 7L, new ForkJoinPool(3)).toString();
+		System.out.println("Same result on any pool" + (one.equals(three) ? " - Success" : " - Failed"));
+
+		// A strategy against itself should take half the pot, give or take
+		// the confidence interval.
+		Tournament mirror = new Tournament();
+		mirror.addStrategy("Best", DiscardStrategy.BEST);
+		mirror.addStrategy("Best again", DiscardStrategy.BEST);
+		TournamentResult even = mirror.run(rounds, 37L);
+		System.out.println("Even match "
+				+ String.format("%.4f +/- %.4f", even.getEquity(0), even.getEquityInterval(0))
+				+ (Math.abs(even.getEquity(0) - 0.5) < 2 * even.getEquityInterval(0)
+						&& Math.abs(even.getEquity(0) + even.getEquity(1) - 1) < 1e-9 ? " - Success" : " - Failed"));
+	}
+
+	// Rounds played with one deck.
+	private static final int ROUNDS_PER_BLOCK = 1 << 14;
+
+	private final List<String> names = new ArrayList<String>();
+	private final List<DiscardStrategy> strategies = new ArrayList<DiscardStrategy>();
+
+	// Seat another strategy. A strategy must not throw away more than
+	// DiscardEvaluator.MAX_DISCARDS cards, or the deck could run out.
+	public void addStrategy(String name, DiscardStrategy strategy) {
+		if (strategies.size() == PokerTable.MAX_SEATS)
+			throw new IllegalStateException("A table seats at most " + PokerTable.MAX_SEATS + " strategies");
+		names.add(name);
+		strategies.add(strategy);
+	}
+
+	public TournamentResult run(long rounds, long seed) {
+		return run(rounds, seed, ForkJoinPool.commonPool());
+	}
+
+	public TournamentResult run(long rounds, long seed, ForkJoinPool pool) {
+		if (strategies.isEmpty())
+			throw new IllegalStateException("No strategies to play");
+
+		List<DiscardStrategy> seated = new ArrayList<DiscardStrategy>(strategies);
+		String[] seatedNames = names.toArray(new String[names.size()]);
+		long blocks = (rounds + ROUNDS_PER_BLOCK - 1) / ROUNDS_PER_BLOCK;
+		return pool.invoke(new Blocks(seated, seatedNames, rounds, seed, 0, blocks));
+	}
+
+	private static class Blocks extends RecursiveTask<TournamentResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		Blocks(List<DiscardStrategy> strategies, String[] names, long rounds, long seed, long from, long to) {
+			this.strategies = strategies;
+			this.names = names;
+			this.rounds = rounds;
+			this.seed = seed;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected TournamentResult compute() {
+			if (to - from > 1) {
+				long middle = (from + to) >>> 1;
+				Blocks left = new Blocks(strategies, names, rounds, seed, from, middle);
+				Blocks right = new Blocks(strategies, names, rounds, seed, middle, to);
+				left.fork();
+				TournamentResult result = right.compute();
+				result.add(left.join());
+				return result;
+			}
+
+			// Play one block with a deck of its own, seeded by the block number.
+			TournamentResult result = new TournamentResult(names);
+			DeckOfCards deck = new DeckOfCards(seed + from * 0x9E3779B97F4A7C15L);
+			HandOfCards[] hands = new HandOfCards[strategies.size()];
+			int[] seats = new int[strategies.size()];
+			int[] values = new int[strategies.size()];
+			long first = from * ROUNDS_PER_BLOCK;
+			long last = Math.min(rounds, first + ROUNDS_PER_BLOCK);
+			for (long round = first; round < last; round++) {
+				deck.reset();
+				for (int i = 0; i < hands.length; i++) {
+					seats[i] = (int) ((round + i) % strategies.size());
+					if (hands[i] == null)
+						hands[i] = new HandOfCards(deck);
+					else
+						hands[i].redeal();
+				}
+
+				for (int i = 0; i < hands.length; i++) {
+					int discardMask = strategies.get(seats[i]).getDiscard(hands[i]);
+					if (Integer.bitCount(discardMask) > DiscardEvaluator.MAX_DISCARDS)
+						throw new IllegalStateException(names[seats[i]] + " discarded more than "
+								+ DiscardEvaluator.MAX_DISCARDS + " cards");
+					hands[i].discard(discardMask & (DiscardEvaluator.NUMBER_OF_DISCARDS - 1));
+					values[i] = hands[i].getGameValue();
+				}
+				result.add(seats, values);
+			}
+			return result;
+		}
+
+		private final List<DiscardStrategy> strategies;
+		private final String[] names;
+		private final long rounds;
+		private final long seed;
+		private final long from;
+		private final long to;
+	}
+}
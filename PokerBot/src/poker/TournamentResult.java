@@ -0,0 +1,116 @@
+package poker;
+
+/*
+ * How each strategy in a Tournament did. A round is won outright by the
+ * strategy with the best hand; when k hands tie for best the pot is split
+ * and each gets 1/k of it. A strategy's equity is its average share of the
+ * pot per round, which is 1/n for every one of n equally good strategies.
+ *
+ * Rounds are independent of each other, so the 95% confidence intervals
+ * are the normal ones: 1.96 standard errors either side of the mean.
+ */
+public class TournamentResult {
+
+	TournamentResult(String[] names) {
+		this.names = names;
+		wins = new long[names.length];
+		splits = new long[names.length * (names.length + 1)];
+	}
+
+	// Count one round: seats holds the strategy at each seat and values the
+	// value of the final hand there.
+	void add(int[] seats, int[] values) {
+		int best = 0;
+		int tied = 0;
+		for (int value : values) {
+			if (value > best) {
+				best = value;
+				tied = 1;
+			} else if (value == best) {
+				tied++;
+			}
+		}
+
+		for (int i = 0; i < seats.length; i++) {
+			if (values[i] != best)
+				continue;
+			if (tied == 1)
+				wins[seats[i]]++;
+			else
+				splits[seats[i] * (names.length + 1) + tied]++;
+		}
+		rounds++;
+	}
+
+	void add(TournamentResult other) {
+		rounds += other.rounds;
+		for (int i = 0; i < wins.length; i++) {
+			wins[i] += other.wins[i];
+		}
+		for (int i = 0; i < splits.length; i++) {
+			splits[i] += other.splits[i];
+		}
+	}
+
+	public int getNumberOfStrategies() {
+		return names.length;
+	}
+
+	public String getName(int strategy) {
+		return names[strategy];
+	}
+
+	public long getRounds() {
+		return rounds;
+	}
+
+	// The share of rounds the strategy won outright.
+	public double getWinRate(int strategy) {
+		return (double) wins[strategy] / rounds;
+	}
+
+	public double getWinRateInterval(int strategy) {
+		double p = getWinRate(strategy);
+		return Z * Math.sqrt(p * (1 - p) / rounds);
+	}
+
+	// The average share of the pot the strategy took.
+	public double getEquity(int strategy) {
+		return getShareMoment(strategy, 1);
+	}
+
+	public double getEquityInterval(int strategy) {
+		double mean = getEquity(strategy);
+		double variance = getShareMoment(strategy, 2) - mean * mean;
+		return Z * Math.sqrt(variance / rounds);
+	}
+
+	// The average of share^power over every round.
+	private double getShareMoment(int strategy, int power) {
+		double sum = wins[strategy];
+		for (int tied = 2; tied <= names.length; tied++) {
+			sum += splits[strategy * (names.length + 1) + tied] / Math.pow(tied, power);
+		}
+		return sum / rounds;
+	}
+
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append("Rounds: ").append(rounds).append('\n');
+		report.append("Strategy\tWin rate\t\tEquity\n");
+		for (int i = 0; i < names.length; i++) {
+			report.append(String.format("%s\t%.4f +/- %.4f\t%.4f +/- %.4f%n", names[i], getWinRate(i),
+					getWinRateInterval(i), getEquity(i), getEquityInterval(i)));
+		}
+		return report.toString();
+	}
+
+	// Standard errors either side of the mean for 95% confidence.
+	private static final double Z = 1.96;
+
+	private final String[] names;
+	private long rounds;
+	private final long[] wins;
+	// Rounds split k ways, counted at strategy * (strategies + 1) + k.
+	private final long[] splits;
+}